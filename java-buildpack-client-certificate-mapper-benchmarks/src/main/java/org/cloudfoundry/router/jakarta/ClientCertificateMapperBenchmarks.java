@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.cloudfoundry.router.core.ClientCertificateEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.security.cert.CertificateException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * JMH benchmarks of {@link ClientCertificateMapper#doFilter}.  Each {@link Workload} is driven both from a single thread and from as many threads as there
+ * are processors, all sharing one mapper, and therefore one engine with one set of caches and one {@code CertificateFactory}.  Run with
+ * {@code java -jar target/benchmarks.jar}, which adds the {@code gc} profiler to any options given on the command line.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+public class ClientCertificateMapperBenchmarks {
+
+    // Held so that the level set on it is not lost when the logger is garbage collected.  Failures are reported by the engine, under its name.
+    private static final Logger LOGGER = Logger.getLogger(ClientCertificateEngine.class.getName());
+
+    private static final FilterChain NO_OP = (request, response) -> {
+    };
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .include(ClientCertificateMapperBenchmarks.class.getName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object multiThreaded(Mapper mapper, Request request) throws IOException, ServletException {
+        return doFilter(mapper, request);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object singleThreaded(Mapper mapper, Request request) throws IOException, ServletException {
+        return doFilter(mapper, request);
+    }
+
+    // The filter skips a request it has already mapped, so the marker is removed along with the certificates to map the request again
+    private static Object doFilter(Mapper mapper, Request request) throws IOException, ServletException {
+        request.request.removeAttribute(ClientCertificateMapper.ATTRIBUTE);
+        request.request.removeAttribute(ClientCertificateMapper.MAPPED);
+        mapper.mapper.doFilter(request.request, request.response, NO_OP);
+        return request.request.getAttribute(ClientCertificateMapper.ATTRIBUTE);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Mapper {
+
+        @Param({"0", "1000"})
+        int cacheMaximumSize;
+
+        ClientCertificateMapper mapper;
+
+        @Setup(Level.Trial)
+        public void setUp() throws CertificateException {
+            // The invalid workload would otherwise measure, and flood the output with, a warning per invocation
+            LOGGER.setLevel(java.util.logging.Level.OFF);
+
+            this.mapper = new ClientCertificateMapper(ClientCertificateEngine.builder()
+                .cacheMaximumSize(this.cacheMaximumSize)
+                .build(), false);
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class Request {
+
+        @Param
+        Workload workload;
+
+        MockHttpServletRequest request;
+
+        MockHttpServletResponse response;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.request = new MockHttpServletRequest();
+            this.response = new MockHttpServletResponse();
+
+            for (String header : this.workload.getHeaders()) {
+                this.request.addHeader(ClientCertificateMapper.HEADER, header);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link CharSequence} view of the remaining bytes of a {@link ByteBuffer}, decoded as ISO-8859-1 one byte per character.  This lets header values read
+ * straight from a container's network buffers be tokenized and decoded without first copying them into a {@link String}.  The buffer's position and limit are
+ * not changed.
+ */
+final class AsciiSequence implements CharSequence {
+
+    private final ByteBuffer buffer;
+
+    private final int length;
+
+    private final int offset;
+
+    AsciiSequence(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.remaining());
+    }
+
+    private AsciiSequence(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+
+        return (char) (this.buffer.get(this.offset + index) & 0xFF);
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > this.length || start > end) {
+            throw new IndexOutOfBoundsException(String.format("start %d, end %d, length %d", start, end, this.length));
+        }
+
+        return new AsciiSequence(this.buffer, this.offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[this.length];
+
+        for (int i = 0; i < this.length; i++) {
+            bytes[i] = this.buffer.get(this.offset + i);
+        }
+
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The daemon thread on which engines do their file I/O, such as reloading trust stores, so that request threads, and event loops in particular, never block
+ * on the file system.  Tasks run one at a time.  A periodic task holds its owner weakly, so that an engine that is no longer referenced is collected rather
+ * than kept alive by its tasks, which then cancel themselves.
+ */
+final class BackgroundExecutor {
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "client-certificate-mapper-background");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private BackgroundExecutor() {
+    }
+
+    /**
+     * Waits for every task submitted so far to have run.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static void await() throws InterruptedException {
+        try {
+            EXECUTOR.submit(() -> {
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Runs a task once, as soon as the thread is free.
+     *
+     * @param task the task
+     */
+    static void execute(Runnable task) {
+        EXECUTOR.execute(task);
+    }
+
+    /**
+     * Runs a task repeatedly, with a fixed delay between the end of one run and the start of the next, for as long as its owner is referenced elsewhere.
+     *
+     * @param owner the owner, passed to each run of the task
+     * @param task  the task, which must not itself reference the owner
+     * @param delay the delay, at least a millisecond
+     * @param <T>   the type of the owner
+     */
+    static <T> void scheduleWithFixedDelay(T owner, Consumer<? super T> task, Duration delay) {
+        long millis = Math.max(1, delay.toMillis());
+
+        WeakTask<T> weakTask = new WeakTask<>(owner, task);
+        weakTask.future = EXECUTOR.scheduleWithFixedDelay(weakTask, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class WeakTask<T> implements Runnable {
+
+        private final WeakReference<T> owner;
+
+        private final Consumer<? super T> task;
+
+        private volatile ScheduledFuture<?> future;
+
+        private WeakTask(T owner, Consumer<? super T> task) {
+            this.owner = new WeakReference<>(owner);
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            T owner = this.owner.get();
+
+            if (owner != null) {
+                this.task.accept(owner);
+            } else if (this.future != null) {
+                this.future.cancel(false);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A file of recently parsed certificates that outlives the process, so that a restarted instance starts with a warm certificate cache instead of parsing every
+ * caller's certificate again under full traffic.  Certificates are appended as they are first parsed, each as a record of its encoded value and DER behind a
+ * magic number and a CRC-32 checksum.  Records are built on the request thread but queued and written on the {@link BackgroundExecutor}, so that no request
+ * waits on the disk, and are dropped rather than queued once the queue holds the file's maximum size.  When loaded, the file is memory-mapped and certificates
+ * are parsed in place, and a record that was truncated, torn or interleaved by a concurrent writer is skipped by scanning forward to the next magic number, so
+ * every intact record is recovered.  Records older than the cache's time-to-live are ignored.  A file over half its maximum size is then compacted to its
+ * latest records, written to a temporary file and atomically renamed over it, and appends stop once it reaches its maximum size, until the next load.  Another
+ * process appending to the file when it is compacted keeps appending to the replaced file until it next loads, so its certificates are only lost from the
+ * cache.  Records are checksummed against corruption, not authenticated: the file is trusted as much as the rest of the instance's local disk.  Failures to
+ * read or write the file are logged and otherwise ignored, and it may be deleted at any time.
+ */
+final class CacheFile {
+
+    // Offsets within a record's header: magic number, checksum, time written, key length and DER length, followed by the key and the DER
+    private static final int CHECKSUM = 4;
+
+    private static final int DER_LENGTH = 20;
+
+    private static final int HEADER_SIZE = 24;
+
+    private static final int KEY_LENGTH = 16;
+
+    // "XFCC"
+    private static final int MAGIC = 0x58464343;
+
+    private static final int WRITTEN = 8;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final Logger logger = Logger.getLogger(ClientCertificateEngine.class.getName());
+
+    private final int maximumSize;
+
+    private final Path path;
+
+    private final Queue<ByteBuffer> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingSize = new AtomicInteger();
+
+    private final long timeToLive;
+
+    private volatile FileChannel channel;
+
+    CacheFile(Path path, int maximumSize, Duration timeToLive) {
+        this.path = path;
+        this.maximumSize = maximumSize;
+        this.timeToLive = timeToLive.toMillis();
+    }
+
+    // Queues the encoded value source[start, end) and the DER written to the buffer to be appended.  Values that are not ISO-8859-1 are not written.
+    void append(CharSequence source, int start, int end, CertificateBuffer buffer) {
+        if (this.channel == null) {
+            return;
+        }
+
+        int keyLength = end - start;
+        int length = HEADER_SIZE + keyLength + buffer.size();
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        for (int i = 0; i < keyLength; i++) {
+            char c = source.charAt(start + i);
+
+            if (c > 0xFF) {
+                return;
+            }
+
+            record.put(HEADER_SIZE + i, (byte) c);
+        }
+        buffer.copyTo(record, HEADER_SIZE + keyLength);
+
+        record.putInt(0, MAGIC);
+        record.putLong(WRITTEN, System.currentTimeMillis());
+        record.putInt(KEY_LENGTH, keyLength);
+        record.putInt(DER_LENGTH, buffer.size());
+        record.putInt(CHECKSUM, checksum(record, WRITTEN, length - WRITTEN));
+
+        // More than the file can hold is never queued, however far behind the disk falls
+        if (this.pendingSize.addAndGet(length) > this.maximumSize) {
+            this.pendingSize.addAndGet(-length);
+            return;
+        }
+
+        this.pending.add(record);
+        if (this.draining.compareAndSet(false, true)) {
+            BackgroundExecutor.execute(this::drain);
+        }
+    }
+
+    // Puts the certificates of intact records written within the time-to-live into the cache, then compacts the file if needed and opens it for appending
+    void load(CertificateParser parser, CertificateCache<X509Certificate> cache) {
+        try {
+            MappedByteBuffer mapped = map();
+            Map<String, Integer> records = new LinkedHashMap<>();
+
+            if (mapped != null) {
+                long now = System.currentTimeMillis();
+
+                for (int position = 0; position + HEADER_SIZE <= mapped.limit(); ) {
+                    int length = recordLength(mapped, position);
+                    if (length == -1) {
+                        position++;
+                        continue;
+                    }
+
+                    X509Certificate certificate = now - mapped.getLong(position + WRITTEN) < this.timeToLive ? parse(parser, mapped, position) : null;
+
+                    // The latest record of each key is kept, in the order they were appended
+                    if (certificate != null) {
+                        String key = key(mapped, position);
+
+                        cache.put(key, certificate);
+                        records.remove(key);
+                        records.put(key, position);
+                    }
+
+                    position += length;
+                }
+
+                // Compacting replaces the file under any other writer, so it is only done when the file needs room
+                if (mapped.limit() > this.maximumSize / 2) {
+                    compact(mapped, new ArrayList<>(records.values()));
+                }
+            }
+
+            this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.logger.fine(String.format("Loaded %d certificate(s) from cache file %s", records.size(), this.path));
+        } catch (IOException e) {
+            this.logger.log(Level.WARNING, String.format("Unable to load cache file %s; continuing without it", this.path), e);
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(slice(buffer, offset, length));
+        return (int) crc.getValue();
+    }
+
+    private void close(FileChannel channel) {
+        this.channel = null;
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing more can be done with it
+        }
+    }
+
+    // Rewrites the file with the latest records that fit in half of its maximum size, leaving the rest for appends
+    private void compact(ByteBuffer mapped, List<Integer> positions) throws IOException {
+        int first = positions.size();
+        for (int size = 0; first > 0; first--) {
+            size += recordLength(mapped, positions.get(first - 1));
+
+            if (size > this.maximumSize / 2) {
+                break;
+            }
+        }
+
+        Path directory = this.path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, String.format("%s.", this.path.getFileName()), ".tmp");
+
+        try {
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                for (int position : positions.subList(first, positions.size())) {
+                    ByteBuffer record = slice(mapped, position, recordLength(mapped, position));
+
+                    while (record.hasRemaining()) {
+                        out.write(record);
+                    }
+                }
+            }
+
+            Files.move(temporary, this.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Writes queued records until there are none left, on the background thread
+    private void drain() {
+        do {
+            for (ByteBuffer record = this.pending.poll(); record != null; record = this.pending.poll()) {
+                this.pendingSize.addAndGet(-record.capacity());
+                write(record);
+            }
+
+            this.draining.set(false);
+
+            // A record queued after the last poll but before the flag was cleared is written by this drain rather than a new one
+        } while (!this.pending.isEmpty() && this.draining.compareAndSet(false, true));
+    }
+
+    private static String key(ByteBuffer mapped, int position) {
+        char[] key = new char[mapped.getInt(position + KEY_LENGTH)];
+
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (char) (mapped.get(position + HEADER_SIZE + i) & 0xFF);
+        }
+
+        return new String(key);
+    }
+
+    private MappedByteBuffer map() throws IOException {
+        try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static X509Certificate parse(CertificateParser parser, ByteBuffer mapped, int position) {
+        int keyLength = mapped.getInt(position + KEY_LENGTH);
+        int derLength = mapped.getInt(position + DER_LENGTH);
+
+        try {
+            return parser.parse(new ByteBufferInputStream(slice(mapped, position + HEADER_SIZE + keyLength, derLength)));
+        } catch (CertificateException e) {
+            return null;
+        }
+    }
+
+    // Returns the length of the intact record at a position, or -1 if there is none
+    private static int recordLength(ByteBuffer mapped, int position) {
+        if (mapped.getInt(position) != MAGIC) {
+            return -1;
+        }
+
+        int keyLength = mapped.getInt(position + KEY_LENGTH);
+        int derLength = mapped.getInt(position + DER_LENGTH);
+
+        if (keyLength <= 0 || derLength <= 0 || (long) position + HEADER_SIZE + keyLength + derLength > mapped.limit()) {
+            return -1;
+        }
+
+        int length = HEADER_SIZE + keyLength + derLength;
+        return checksum(mapped, position + WRITTEN, length - WRITTEN) == mapped.getInt(position + CHECKSUM) ? length : -1;
+    }
+
+    private void write(ByteBuffer record) {
+        FileChannel channel = this.channel;
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            if (channel.size() + record.remaining() > this.maximumSize) {
+                return;
+            }
+
+            // A single write in append mode, so that records from concurrent writers are appended whole
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException e) {
+            this.logger.log(Level.WARNING, String.format("Unable to append to cache file %s; no longer appending", this.path), e);
+            close(channel);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+
+        // Positioned as a Buffer, whose methods return Buffer on every Java version
+        Buffer view = duplicate;
+        view.limit(offset + length);
+        view.position(offset);
+
+        return duplicate.slice();
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int n = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, n);
+            return n;
+        }
+
+    }
+
+}
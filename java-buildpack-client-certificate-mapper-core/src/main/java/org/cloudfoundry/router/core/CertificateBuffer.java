@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A growable byte buffer that decoded certificates are written into, and that is read back as an {@link InputStream} by the {@code CertificateFactory}.
+ * Buffers are reused through a {@link StripedPool} so that decoding allocates nothing once the pooled buffers have grown to the largest certificate seen.
+ */
+final class CertificateBuffer extends InputStream {
+
+    private static final StripedPool<CertificateBuffer> BUFFERS = new StripedPool<>();
+
+    private static final int INITIAL_CAPACITY = 2048;
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+    private int count;
+
+    private int position;
+
+    private CertificateBuffer() {
+    }
+
+    static CertificateBuffer acquire() {
+        CertificateBuffer buffer = BUFFERS.acquire();
+        return buffer != null ? buffer : new CertificateBuffer();
+    }
+
+    @Override
+    public int available() {
+        return this.count - this.position;
+    }
+
+    @Override
+    public int read() {
+        return this.position < this.count ? this.bytes[this.position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+
+        int available = available();
+        if (available == 0) {
+            return -1;
+        }
+
+        int n = Math.min(len, available);
+        System.arraycopy(this.bytes, this.position, b, off, n);
+        this.position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        int skipped = (int) Math.max(0, Math.min(n, available()));
+        this.position += skipped;
+        return skipped;
+    }
+
+    /**
+     * Empties the buffer, ensuring it can hold {@code capacity} bytes without growing.
+     *
+     * @param capacity the number of bytes that will be written
+     */
+    void clear(int capacity) {
+        if (this.bytes.length < capacity) {
+            this.bytes = new byte[Math.max(capacity, this.bytes.length * 2)];
+        }
+
+        this.count = 0;
+        this.position = 0;
+    }
+
+    // Copies the bytes written to an absolute index of a buffer, without changing its position
+    void copyTo(ByteBuffer target, int index) {
+        for (int i = 0; i < this.count; i++) {
+            target.put(index + i, this.bytes[i]);
+        }
+    }
+
+    void release() {
+        BUFFERS.release(this);
+    }
+
+    int size() {
+        return this.count;
+    }
+
+    /**
+     * Appends a byte.  Callers must have cleared the buffer with enough capacity for everything they write.
+     *
+     * @param b the byte to append
+     */
+    void write(int b) {
+        this.bytes[this.count++] = (byte) b;
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache keyed by raw {@code X-Forwarded-Client-Cert} values.  Entries are held in a set-associative table so that lookups never lock, entries expire
+ * after a fixed time-to-live, and a full set evicts the entry closest to expiry.  Lookups may be made by a range of a larger value, without extracting the key.
+ * A cache with a maximum size of zero is disabled and never holds an entry.  Statistics are exposed publicly so that adapters can report them; reads and writes
+ * are reserved to the {@link ClientCertificateEngine}.
+ *
+ * @param <V> the type of the cached values
+ */
+public final class CertificateCache<V> {
+
+    private static final int WAYS = 4;
+
+    private final AtomicReferenceArray<Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final int sets;
+
+    private final long timeToLive;
+
+    private final int ways;
+
+    CertificateCache(int maximumSize, Duration timeToLive) {
+        this.ways = Math.max(0, Math.min(WAYS, maximumSize));
+        this.sets = this.ways == 0 ? 0 : Integer.highestOneBit(maximumSize / this.ways);
+        this.entries = new AtomicReferenceArray<>(this.sets * this.ways);
+        this.timeToLive = timeToLive.toNanos();
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void clear() {
+        for (int i = 0; i < this.entries.length(); i++) {
+            this.entries.set(i, null);
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found a live entry.
+     *
+     * @return the number of hits
+     */
+    public long hitCount() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that did not find a live entry.  Lookups against a disabled cache are not counted.
+     *
+     * @return the number of misses
+     */
+    public long missCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Returns the number of live entries in the cache.
+     *
+     * @return the number of live entries
+     */
+    public int size() {
+        long now = System.nanoTime();
+
+        int size = 0;
+        for (int i = 0; i < this.entries.length(); i++) {
+            Entry<V> entry = this.entries.get(i);
+
+            if (entry != null && !entry.isExpired(now)) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    V get(CharSequence key) {
+        return get(key, 0, key.length(), hash(key), true);
+    }
+
+    V get(CharSequence source, int start, int end) {
+        return get(source, start, end, hash(source, start, end), true);
+    }
+
+    // Counts hits but not misses, for probes that are followed by a counted lookup on a miss
+    V peek(CharSequence key) {
+        return get(key, 0, key.length(), hash(key), false);
+    }
+
+    void put(String key, V value) {
+        if (this.sets == 0) {
+            return;
+        }
+
+        int hash = hash(key);
+        int base = index(hash);
+        long now = System.nanoTime();
+
+        int victim = -1;
+        long victimExpiry = 0;
+
+        for (int i = base; i < base + this.ways; i++) {
+            Entry<V> entry = this.entries.get(i);
+
+            if (entry == null || entry.isExpired(now) || (entry.hash == hash && entry.key.equals(key))) {
+                victim = i;
+                break;
+            }
+
+            if (victim == -1 || entry.expires - victimExpiry < 0) {
+                victim = i;
+                victimExpiry = entry.expires;
+            }
+        }
+
+        this.entries.set(victim, new Entry<>(key, hash, value, now + this.timeToLive));
+    }
+
+    private V get(CharSequence source, int start, int end, int hash, boolean countMiss) {
+        if (this.sets == 0) {
+            return null;
+        }
+
+        int base = index(hash);
+        long now = System.nanoTime();
+
+        for (int i = base; i < base + this.ways; i++) {
+            Entry<V> entry = this.entries.get(i);
+
+            if (entry != null && entry.hash == hash && entry.matches(source, start, end)) {
+                if (entry.isExpired(now)) {
+                    this.entries.compareAndSet(i, entry, null);
+                    break;
+                }
+
+                this.hits.increment();
+                return entry.value;
+            }
+        }
+
+        if (countMiss) {
+            this.misses.increment();
+        }
+
+        return null;
+    }
+
+    private static int hash(CharSequence key) {
+        return key instanceof String ? spread(key.hashCode()) : hash(key, 0, key.length());
+    }
+
+    // Matches String.hashCode() so that whole keys can use their cached hash
+    private static int hash(CharSequence source, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + source.charAt(i);
+        }
+
+        return spread(h);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private int index(int hash) {
+        return (hash & (this.sets - 1)) * this.ways;
+    }
+
+    private static final class Entry<V> {
+
+        private final long expires;
+
+        private final int hash;
+
+        private final String key;
+
+        private final V value;
+
+        private Entry(String key, int hash, V value, long expires) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.expires = expires;
+        }
+
+        private boolean isExpired(long now) {
+            return now - this.expires >= 0;
+        }
+
+        private boolean matches(CharSequence source, int start, int end) {
+            int length = end - start;
+
+            if (this.key.length() != length) {
+                return false;
+            }
+
+            if (source instanceof String) {
+                return this.key.regionMatches(0, (String) source, start, length);
+            }
+
+            for (int i = 0; i < length; i++) {
+                if (this.key.charAt(i) != source.charAt(start + i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.util.Arrays;
+
+/**
+ * Decodes a single certificate from a range of an {@code X-Forwarded-Client-Cert} value directly into a {@link CertificateBuffer}.  The value may be either
+ * base64 encoded DER, as sent by gorouter, or a URL encoded PEM, as sent by nginx.  The encoding is classified up front with a single scan of the value, and
+ * PEM armor is stripped while decoding so that the buffer always holds DER.
+ */
+final class CertificateDecoder {
+
+    private static final byte[] BASE64 = new byte[128];
+
+    private static final String PEM_BEGIN = "-----BEGIN";
+
+    static {
+        Arrays.fill(BASE64, (byte) -1);
+
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private CertificateDecoder() {
+    }
+
+    /**
+     * Classifies the encoding of a range of a value without decoding it.
+     *
+     * @param value the value containing the certificate
+     * @param start the start of the certificate in the value, inclusive
+     * @param end   the end of the certificate in the value, exclusive
+     * @return the encoding of the range
+     */
+    static CertificateEncoding classify(CharSequence value, int start, int end) {
+        boolean base64 = true;
+        boolean escaped = false;
+
+        for (int i = start; i < end && !escaped; i++) {
+            char c = value.charAt(i);
+
+            if (c == '%') {
+                base64 = false;
+                escaped = true;
+            } else if (base64 && !isBase64(c) && c != '=') {
+                base64 = false;
+            }
+        }
+
+        if (base64) {
+            return CertificateEncoding.BASE64;
+        } else if (new Reader(value, start, end, escaped).skip(PEM_BEGIN)) {
+            return escaped ? CertificateEncoding.URL_ENCODED_PEM : CertificateEncoding.PEM;
+        } else {
+            return CertificateEncoding.URL_ENCODED;
+        }
+    }
+
+    /**
+     * Decodes a range of a value according to its {@link #classify(CharSequence, int, int) classified} encoding.
+     *
+     * @param value  the value containing the certificate
+     * @param start  the start of the certificate in the value, inclusive
+     * @param end    the end of the certificate in the value, exclusive
+     * @param buffer the buffer to decode into
+     * @return {@code true} if the range could be decoded, otherwise {@code false}
+     */
+    static boolean decode(CharSequence value, int start, int end, CertificateBuffer buffer) {
+        return decode(value, start, end, classify(value, start, end), buffer);
+    }
+
+    static boolean decode(CharSequence value, int start, int end, CertificateEncoding encoding, CertificateBuffer buffer) {
+        switch (encoding) {
+            case BASE64:
+                return decodeBase64(value, start, end, buffer);
+            case PEM:
+                return decodePem(value, start, end, false, buffer);
+            case URL_ENCODED_PEM:
+                return decodePem(value, start, end, true, buffer);
+            default:
+                return decodeUrl(value, start, end, buffer);
+        }
+    }
+
+    static boolean decodeBase64(CharSequence value, int start, int end, CertificateBuffer buffer) {
+        buffer.clear((end - start) / 4 * 3 + 2);
+
+        int bits = 0;
+        int n = 0;
+        int i = start;
+
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '=') {
+                break;
+            }
+
+            int sextet = sextet(c);
+            if (sextet < 0) {
+                return false;
+            }
+
+            bits = bits << 6 | sextet;
+            if (++n == 4) {
+                buffer.write(bits >> 16);
+                buffer.write(bits >> 8);
+                buffer.write(bits);
+                bits = 0;
+                n = 0;
+            }
+        }
+
+        int padding = end - i;
+        for (; i < end; i++) {
+            if (value.charAt(i) != '=') {
+                return false;
+            }
+        }
+
+        if (n == 2 && (padding == 0 || padding == 2)) {
+            buffer.write(bits >> 4);
+            return true;
+        } else if (n == 3 && padding <= 1) {
+            buffer.write(bits >> 10);
+            buffer.write(bits >> 2);
+            return true;
+        } else {
+            return n == 0 && padding == 0;
+        }
+    }
+
+    /**
+     * Decodes the body of a PEM, optionally URL encoded, skipping its armor and any whitespace.  Only the first PEM in the range is decoded.
+     *
+     * @param value   the value containing the certificate
+     * @param start   the start of the certificate in the value, inclusive
+     * @param end     the end of the certificate in the value, exclusive
+     * @param escaped whether the range is URL encoded
+     * @param buffer  the buffer to decode into
+     * @return {@code true} if the range could be decoded, otherwise {@code false}
+     */
+    static boolean decodePem(CharSequence value, int start, int end, boolean escaped, CertificateBuffer buffer) {
+        buffer.clear((end - start) / 4 * 3 + 2);
+
+        Reader reader = new Reader(value, start, end, escaped);
+        if (!reader.skip(PEM_BEGIN)) {
+            return false;
+        }
+
+        for (int dashes = 0; dashes < 5; ) {
+            int c = reader.next();
+            if (c < 0) {
+                return false;
+            }
+
+            dashes = c == '-' ? dashes + 1 : 0;
+        }
+
+        int bits = 0;
+        int n = 0;
+
+        for (int c = reader.next(); c != '-' && c != '='; c = reader.next()) {
+            if (c < 0) {
+                return false;
+            } else if (isWhitespace(c)) {
+                continue;
+            }
+
+            int sextet = sextet(c);
+            if (sextet < 0) {
+                return false;
+            }
+
+            bits = bits << 6 | sextet;
+            if (++n == 4) {
+                buffer.write(bits >> 16);
+                buffer.write(bits >> 8);
+                buffer.write(bits);
+                bits = 0;
+                n = 0;
+            }
+        }
+
+        if (n == 2) {
+            buffer.write(bits >> 4);
+        } else if (n == 3) {
+            buffer.write(bits >> 10);
+            buffer.write(bits >> 2);
+        }
+
+        return n != 1;
+    }
+
+    static boolean decodeUrl(CharSequence value, int start, int end, CertificateBuffer buffer) {
+        buffer.clear(end - start);
+
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+
+            if (c == '%') {
+                int high = i + 2 < end ? Character.digit(value.charAt(i + 1), 16) : -1;
+                int low = high != -1 ? Character.digit(value.charAt(i + 2), 16) : -1;
+
+                if (low == -1) {
+                    return false;
+                }
+
+                buffer.write(high << 4 | low);
+                i += 2;
+            } else if (c == '+') {
+                buffer.write(' ');
+            } else if (c < 0x80) {
+                buffer.write(c);
+            } else {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds the end of the first PEM in a range, optionally URL encoded, without decoding its body, so that a bundle of PEMs can be split into certificates.
+     * Any whitespace following the PEM is included, so that the next PEM in the bundle starts at the returned position.
+     *
+     * @param value   the value containing the bundle
+     * @param start   the start of the bundle in the value, inclusive
+     * @param end     the end of the bundle in the value, exclusive
+     * @param escaped whether the range is URL encoded
+     * @return the end of the first PEM in the value, exclusive, or {@code -1} if the range does not start with a complete PEM
+     */
+    static int pemEnd(CharSequence value, int start, int end, boolean escaped) {
+        Reader reader = new Reader(value, start, end, escaped);
+        if (!reader.skip(PEM_BEGIN)) {
+            return -1;
+        }
+
+        // The BEGIN line, the body and the END line are delimited by the dashes of the armor
+        for (int runs = 0, dashes = 0; runs < 2 || dashes < 5; ) {
+            int c = reader.next();
+            if (c < 0) {
+                return -1;
+            } else if (c == '-') {
+                dashes++;
+            } else {
+                runs += dashes >= 5 ? 1 : 0;
+                dashes = 0;
+            }
+        }
+
+        reader.skipWhitespace();
+        return reader.position;
+    }
+
+    private static boolean isBase64(int c) {
+        return sextet(c) >= 0;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static int sextet(int c) {
+        return c < BASE64.length ? BASE64[c] : -1;
+    }
+
+    /**
+     * Reads the characters of a range of a value, decoding URL escapes if the range is escaped.
+     */
+    private static final class Reader {
+
+        private final int end;
+
+        private final boolean escaped;
+
+        private final CharSequence value;
+
+        private int position;
+
+        private Reader(CharSequence value, int start, int end, boolean escaped) {
+            this.value = value;
+            this.position = start;
+            this.end = end;
+            this.escaped = escaped;
+        }
+
+        /**
+         * Returns the next decoded character.
+         *
+         * @return the next character, or {@code -1} at the end of the range or at a malformed escape
+         */
+        private int next() {
+            if (this.position == this.end) {
+                return -1;
+            }
+
+            char c = this.value.charAt(this.position++);
+            if (!this.escaped) {
+                return c;
+            } else if (c == '+') {
+                return ' ';
+            } else if (c != '%') {
+                return c;
+            } else if (this.position + 2 > this.end) {
+                return -1;
+            }
+
+            int high = Character.digit(this.value.charAt(this.position++), 16);
+            int low = Character.digit(this.value.charAt(this.position++), 16);
+            return high == -1 || low == -1 ? -1 : high << 4 | low;
+        }
+
+        private boolean skip(String expected) {
+            for (int i = 0; i < expected.length(); i++) {
+                if (next() != expected.charAt(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private void skipWhitespace() {
+            int position = this.position;
+            while (isWhitespace(next())) {
+                position = this.position;
+            }
+
+            this.position = position;
+        }
+
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+/**
+ * The encodings in which a certificate may appear in an {@code X-Forwarded-Client-Cert} value.
+ */
+public enum CertificateEncoding {
+
+    /**
+     * Base64 encoded DER, as sent by gorouter.
+     */
+    BASE64,
+
+    /**
+     * PEM, with its armor and line breaks unescaped.
+     */
+    PEM,
+
+    /**
+     * Any other URL encoded value, handed to the {@code CertificateFactory} as decoded.
+     */
+    URL_ENCODED,
+
+    /**
+     * URL encoded PEM, as sent by nginx.
+     */
+    URL_ENCODED_PEM
+
+}
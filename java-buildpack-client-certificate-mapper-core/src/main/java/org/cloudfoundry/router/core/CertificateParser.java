@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.io.InputStream;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+
+/**
+ * Parses DER encoded certificates with a single {@code CertificateFactory}, shared between threads.  This class takes no locks of its own, so any contention,
+ * and any pinning of virtual threads, comes from the security provider.  The JDK's default provider synchronizes on a class-wide certificate cache on every
+ * parse, which no number of factories avoids, so first-time parses are kept to a minimum by the engine's caches instead.
+ */
+final class CertificateParser {
+
+    private final CertificateFactory factory;
+
+    CertificateParser() throws CertificateException {
+        this.factory = CertificateFactory.getInstance("X.509");
+    }
+
+    X509Certificate parse(InputStream in) throws CertificateException {
+        return (X509Certificate) this.factory.generateCertificate(in);
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertPathValidator;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Validates certificate chains against the trust anchors in a PEM bundle, such as the Cloud Foundry instance identity CA.  Validation is PKIX, without
+ * revocation checking.  Verdicts, trusted or not, are memoized against the chain they were computed for, and hold until the trust anchors change or until
+ * the next {@code notBefore} or {@code notAfter} boundary of any certificate in the chain, whichever is sooner.  Chains are matched by identity in a
+ * {@link ReferenceTable}: the engine validates the instances held by its chain cache, so a repeat caller costs a table lookup rather than signature checks.
+ * The bundle's modification time is checked once per interval on the {@link BackgroundExecutor}, which reloads the bundle when it changes, so request threads
+ * only read the current trust anchors and never touch the file system.  Neither lookups nor reloads take locks.
+ */
+final class ChainValidator {
+
+    private final CertificateFactory certificateFactory;
+
+    private final Logger logger = Logger.getLogger(ClientCertificateEngine.class.getName());
+
+    private final Path trustStore;
+
+    private final ReferenceTable<X509Certificate[], Verdict> verdicts;
+
+    private volatile boolean reloadFailed;
+
+    private volatile TrustAnchors trustAnchors;
+
+    ChainValidator(Path trustStore, Duration checkInterval, int maximumSize) throws CertificateException {
+        this.certificateFactory = CertificateFactory.getInstance("X.509");
+        this.trustStore = trustStore;
+        this.verdicts = new ReferenceTable<>(maximumSize);
+
+        try {
+            this.trustAnchors = load(0);
+        } catch (IOException e) {
+            throw new CertificateException(String.format("Unable to read trust store %s", trustStore), e);
+        }
+
+        BackgroundExecutor.scheduleWithFixedDelay(this, ChainValidator::reload, checkInterval);
+    }
+
+    // Returns null, rather than validating, if there is no current verdict for the chain
+    Verdict getCachedVerdict(X509Certificate[] chain) {
+        TrustAnchors trustAnchors = this.trustAnchors;
+        Verdict verdict = this.verdicts.get(chain);
+
+        return verdict == null || !verdict.isCurrent(trustAnchors) ? null : verdict;
+    }
+
+    // Reloads the trust anchors if the bundle's modification time has changed, keeping the previous trust anchors, and warning once until a later check
+    // succeeds, if it cannot be read
+    void reload() {
+        TrustAnchors trustAnchors = this.trustAnchors;
+
+        try {
+            if (!Files.getLastModifiedTime(this.trustStore).equals(trustAnchors.lastModified)) {
+                trustAnchors = load(trustAnchors.generation + 1);
+                this.trustAnchors = trustAnchors;
+                this.logger.info(String.format("Reloaded %d trust anchor(s) from %s", trustAnchors.anchors.size(), this.trustStore));
+            }
+
+            this.reloadFailed = false;
+        } catch (CertificateException | IOException e) {
+            if (!this.reloadFailed) {
+                this.reloadFailed = true;
+                this.logger.log(Level.WARNING, String.format("Unable to reload trust store %s; keeping the previous trust anchors", this.trustStore), e);
+            }
+        }
+    }
+
+    Verdict validate(X509Certificate[] chain) {
+        Verdict verdict = getCachedVerdict(chain);
+
+        if (verdict == null) {
+            verdict = validate(chain, this.trustAnchors);
+            this.verdicts.put(chain, verdict);
+        }
+
+        return verdict;
+    }
+
+    private TrustAnchors load(int generation) throws CertificateException, IOException {
+        FileTime lastModified = Files.getLastModifiedTime(this.trustStore);
+        Set<TrustAnchor> anchors = new HashSet<>();
+
+        try (InputStream in = Files.newInputStream(this.trustStore)) {
+            for (Certificate certificate : this.certificateFactory.generateCertificates(in)) {
+                anchors.add(new TrustAnchor((X509Certificate) certificate, null));
+            }
+        }
+
+        if (anchors.isEmpty()) {
+            throw new CertificateException(String.format("Trust store %s contains no certificates", this.trustStore));
+        }
+
+        return new TrustAnchors(Collections.unmodifiableSet(anchors), generation, lastModified);
+    }
+
+    private Verdict validate(X509Certificate[] chain, TrustAnchors trustAnchors) {
+        long now = System.currentTimeMillis();
+
+        // The verdict may change at the next validity boundary of any certificate in the chain
+        long expires = Long.MAX_VALUE;
+        for (X509Certificate certificate : chain) {
+            long notBefore = certificate.getNotBefore().getTime();
+            long notAfter = certificate.getNotAfter().getTime();
+
+            if (notBefore > now) {
+                expires = Math.min(expires, notBefore);
+            }
+            if (notAfter >= now) {
+                expires = Math.min(expires, notAfter + 1);
+            }
+        }
+
+        try {
+            PKIXParameters parameters = new PKIXParameters(trustAnchors.anchors);
+            parameters.setDate(new Date(now));
+            parameters.setRevocationEnabled(false);
+
+            CertPathValidator.getInstance("PKIX").validate(this.certificateFactory.generateCertPath(Arrays.asList(chain)), parameters);
+            return new Verdict(true, null, expires, trustAnchors.generation);
+        } catch (GeneralSecurityException e) {
+            return new Verdict(false, e.getMessage(), expires, trustAnchors.generation);
+        }
+    }
+
+    /**
+     * The outcome of validating a chain.
+     */
+    static final class Verdict {
+
+        private final long expires;
+
+        private final int generation;
+
+        private final String message;
+
+        private final boolean trusted;
+
+        private Verdict(boolean trusted, String message, long expires, int generation) {
+            this.trusted = trusted;
+            this.message = message;
+            this.expires = expires;
+            this.generation = generation;
+        }
+
+        String getMessage() {
+            return this.message;
+        }
+
+        boolean isTrusted() {
+            return this.trusted;
+        }
+
+        private boolean isCurrent(TrustAnchors trustAnchors) {
+            return this.generation == trustAnchors.generation && System.currentTimeMillis() < this.expires;
+        }
+
+    }
+
+    private static final class TrustAnchors {
+
+        private final Set<TrustAnchor> anchors;
+
+        private final int generation;
+
+        private final FileTime lastModified;
+
+        private TrustAnchors(Set<TrustAnchor> anchors, int generation, FileTime lastModified) {
+            this.anchors = anchors;
+            this.generation = generation;
+            this.lastModified = lastModified;
+        }
+
+    }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A set of IPv4 and IPv6 address ranges, in CIDR notation, against which the addresses of peers are matched.  Each family is held as a binary trie of range
+ * prefixes, so a lookup walks at most 32 or 128 bits whatever the number of ranges, and literal addresses are parsed in place, IPv4 without allocating.
+ * IPv4-mapped IPv6 addresses, such as {@code ::ffff:10.0.0.1}, are matched as the IPv4 addresses they carry.  The set is immutable once constructed.
+ */
+final class CidrTrie {
+
+    private final Trie ipv4 = new Trie();
+
+    private final Trie ipv6 = new Trie();
+
+    CidrTrie(Collection<String> ranges) {
+        for (String range : ranges) {
+            add(range.trim());
+        }
+    }
+
+    // Matches an address of four or sixteen bytes, as returned by InetAddress.getAddress()
+    boolean contains(byte[] address) {
+        if (address == null) {
+            return false;
+        } else if (address.length == 4) {
+            return this.ipv4.contains(toLong(address, 0, 4) << 32, 0);
+        } else if (address.length == 16) {
+            return contains(toLong(address, 0, 8), toLong(address, 8, 8));
+        } else {
+            return false;
+        }
+    }
+
+    // Matches a literal address, as returned by ServletRequest.getRemoteAddr(), optionally bracketed and with a zone
+    boolean contains(CharSequence address) {
+        if (address == null) {
+            return false;
+        }
+
+        int start = 0;
+        int end = address.length();
+        if (end >= 2 && address.charAt(0) == '[' && address.charAt(end - 1) == ']') {
+            start++;
+            end--;
+        }
+
+        long ipv4 = parseIpv4(address, start, end);
+        if (ipv4 != -1) {
+            return this.ipv4.contains(ipv4 << 32, 0);
+        }
+
+        long[] ipv6 = parseIpv6(address, start, end);
+        return ipv6 != null && contains(ipv6[0], ipv6[1]);
+    }
+
+    private void add(String range) {
+        int slash = range.indexOf('/');
+        int end = slash == -1 ? range.length() : slash;
+
+        long ipv4 = parseIpv4(range, 0, end);
+        long[] ipv6 = ipv4 == -1 ? parseIpv6(range, 0, end) : null;
+        if (ipv4 == -1 && ipv6 == null) {
+            throw new IllegalArgumentException(String.format("Invalid address in range: %s", range));
+        }
+
+        int maximum = ipv4 != -1 ? 32 : 128;
+        int prefixLength = slash == -1 ? maximum : parsePrefixLength(range, slash + 1, maximum);
+        if (prefixLength == -1) {
+            throw new IllegalArgumentException(String.format("Invalid prefix length in range: %s", range));
+        }
+
+        if (ipv4 != -1) {
+            this.ipv4.add(ipv4 << 32, 0, prefixLength);
+        } else if (isIpv4Mapped(ipv6[0], ipv6[1]) && prefixLength >= 96) {
+            this.ipv4.add(ipv6[1] << 32, 0, prefixLength - 96);
+        } else {
+            this.ipv6.add(ipv6[0], ipv6[1], prefixLength);
+        }
+    }
+
+    private boolean contains(long high, long low) {
+        return isIpv4Mapped(high, low) ? this.ipv4.contains(low << 32, 0) : this.ipv6.contains(high, low);
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        } else {
+            return -1;
+        }
+    }
+
+    private static boolean isIpv4Mapped(long high, long low) {
+        return high == 0 && (low >>> 32) == 0xFFFF;
+    }
+
+    // Returns the dotted-quad address in [start, end) as an unsigned 32-bit value, or -1 if it is not one
+    private static long parseIpv4(CharSequence s, int start, int end) {
+        long value = 0;
+
+        for (int i = start, octets = 0; ; i++) {
+            int octet = 0;
+            int digits = 0;
+
+            for (; i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++) {
+                octet = octet * 10 + s.charAt(i) - '0';
+
+                if (++digits > 3) {
+                    return -1;
+                }
+            }
+
+            if (digits == 0 || octet > 255) {
+                return -1;
+            }
+
+            value = value << 8 | octet;
+
+            if (++octets == 4) {
+                return i == end ? value : -1;
+            }
+
+            if (i == end || s.charAt(i) != '.') {
+                return -1;
+            }
+        }
+    }
+
+    // Returns the IPv6 address in [start, end) as its high and low 64 bits, or null if it is not one
+    private static long[] parseIpv6(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == '%') {
+                end = i;
+            }
+        }
+
+        int[] groups = new int[8];
+        int count = 0;
+        int compressed = -1;
+
+        int i = start;
+        if (end - start >= 2 && s.charAt(start) == ':' && s.charAt(start + 1) == ':') {
+            compressed = 0;
+            i += 2;
+        }
+
+        while (i < end) {
+            int groupEnd = i;
+            while (groupEnd < end && s.charAt(groupEnd) != ':' && s.charAt(groupEnd) != '.') {
+                groupEnd++;
+            }
+
+            // A dotted-quad in place of the last two groups
+            if (groupEnd < end && s.charAt(groupEnd) == '.') {
+                long ipv4 = count <= 6 ? parseIpv4(s, i, end) : -1;
+                if (ipv4 == -1) {
+                    return null;
+                }
+
+                groups[count++] = (int) (ipv4 >>> 16);
+                groups[count++] = (int) (ipv4 & 0xFFFF);
+                break;
+            }
+
+            if (count == 8 || groupEnd == i || groupEnd - i > 4) {
+                return null;
+            }
+
+            int group = 0;
+            for (; i < groupEnd; i++) {
+                int digit = hexDigit(s.charAt(i));
+                if (digit == -1) {
+                    return null;
+                }
+
+                group = group << 4 | digit;
+            }
+            groups[count++] = group;
+
+            if (i == end) {
+                break;
+            }
+
+            if (++i == end) {
+                return null;
+            }
+
+            if (s.charAt(i) == ':') {
+                if (compressed != -1) {
+                    return null;
+                }
+
+                compressed = count;
+                i++;
+            }
+        }
+
+        // "::" stands for at least one group of zeros
+        if (compressed == -1 ? count != 8 : count == 8) {
+            return null;
+        }
+
+        long high = 0;
+        long low = 0;
+        int gap = 8 - count;
+
+        for (int group = 0, index = 0; group < 8; group++) {
+            long value = compressed != -1 && group >= compressed && group < compressed + gap ? 0 : groups[index++];
+
+            if (group < 4) {
+                high = high << 16 | value;
+            } else {
+                low = low << 16 | value;
+            }
+        }
+
+        return new long[]{ high, low };
+    }
+
+    private static int parsePrefixLength(CharSequence s, int start, int maximum) {
+        if (start == s.length() || s.length() - start > 3) {
+            return -1;
+        }
+
+        int value = 0;
+        for (int i = start; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            value = value * 10 + c - '0';
+        }
+
+        return value <= maximum ? value : -1;
+    }
+
+    private static long toLong(byte[] bytes, int offset, int length) {
+        long value = 0;
+
+        for (int i = offset; i < offset + length; i++) {
+            value = value << 8 | (bytes[i] & 0xFF);
+        }
+
+        return value;
+    }
+
+    // Node n's children are at 2n and 2n + 1, for a zero and a one bit.  The root is never a child, so a child of zero is absent.
+    private static final class Trie {
+
+        private int[] children = new int[2];
+
+        private int size = 1;
+
+        private boolean[] terminal = new boolean[1];
+
+        void add(long high, long low, int prefixLength) {
+            int node = 0;
+
+            for (int i = 0; i < prefixLength; i++) {
+                // Already covered by a shorter range
+                if (this.terminal[node]) {
+                    return;
+                }
+
+                int index = 2 * node + bit(high, low, i);
+                if (this.children[index] == 0) {
+                    int child = allocate();
+                    this.children[index] = child;
+                }
+
+                node = this.children[index];
+            }
+
+            this.terminal[node] = true;
+        }
+
+        // Walks the address's bits from the most significant until a range ends, or the address leaves every range
+        boolean contains(long high, long low) {
+            int node = 0;
+
+            for (int i = 0; !this.terminal[node]; i++) {
+                node = this.children[2 * node + bit(high, low, i)];
+
+                if (node == 0) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private int allocate() {
+            if (this.size == this.terminal.length) {
+                this.children = Arrays.copyOf(this.children, 4 * this.size);
+                this.terminal = Arrays.copyOf(this.terminal, 2 * this.size);
+            }
+
+            return this.size++;
+        }
+
+        private static int bit(long high, long low, int index) {
+            return (int) (index < 64 ? high >>> (63 - index) : low >>> (127 - index)) & 1;
+        }
+
+    }
+
+}
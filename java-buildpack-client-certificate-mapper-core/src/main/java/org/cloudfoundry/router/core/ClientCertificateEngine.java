@@ -0,0 +1,889 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Maps raw {@code X-Forwarded-Client-Cert} values to certificate chains, independently of the servlet or reactive API serving the request.  Values may be given
+ * as any {@link CharSequence}, or as the bytes of a {@link ByteBuffer}, and are tokenized and decoded in place into a pooled buffer, without intermediate
+ * strings or collections.  Parsed certificates and chains are cached by their raw value, so that callers presenting the same certificates on every request skip
+ * decoding and parsing entirely.  An optional off-heap tier holds the DER of far more certificates than the on-heap caches, at a fixed heap cost, so that
+ * certificates evicted from the heap are parsed again without being decoded.  Values exceeding the configured limits on their size, number of certificates or
+ * certificate size are rejected by scanning alone, before any decoding.  Values that fail are remembered by fingerprint for a while, so that a caller repeating
+ * a bad header is rejected without parsing it again, and failures are reported as rate-limited, aggregated warnings rather than one per request.  If a trust
+ * store is configured, chains are also validated against it, and the verdict is memoized for as long as it holds.  Envoy-style structured values,
+ * {@code By=...;Hash=...;Cert="...";Chain="..."}, are also accepted, and their chains are additionally cached by the {@code Hash} of the leaf certificate, so
+ * that repeat callers skip decoding even when the rest of the value differs, for example in its {@code By} element.  Scanning, decoding, parsing, cache lookups
+ * and failures are also recorded as JDK Flight Recorder events, which are disabled by default and cost a field read until a recording enables them.  Instances
+ * are thread-safe and are intended to be shared by every adapter in a process.
+ */
+public final class ClientCertificateEngine {
+
+    /**
+     * The default maximum size, in bytes, of the cache file.
+     */
+    public static final int DEFAULT_CACHE_FILE_MAXIMUM_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The default maximum number of entries in each cache.
+     */
+    public static final int DEFAULT_CACHE_MAXIMUM_SIZE = 1000;
+
+    /**
+     * The default capacity, in bytes, of the off-heap tier of the certificate cache.  The tier is disabled by default.
+     */
+    public static final int DEFAULT_CACHE_OFF_HEAP_CAPACITY = 0;
+
+    /**
+     * The default time-to-live of cache entries.
+     */
+    public static final Duration DEFAULT_CACHE_TIME_TO_LIVE = Duration.ofHours(1);
+
+    /**
+     * The default interval between aggregated failure warnings.
+     */
+    public static final Duration DEFAULT_DIAGNOSTICS_INTERVAL = Duration.ofMinutes(1);
+
+    /**
+     * The default maximum size, in characters, of an encoded certificate.
+     */
+    public static final int DEFAULT_MAXIMUM_CERTIFICATE_SIZE = 16 * 1024;
+
+    /**
+     * The default maximum number of certificates in a header.
+     */
+    public static final int DEFAULT_MAXIMUM_CHAIN_LENGTH = 16;
+
+    /**
+     * The default maximum size, in characters, of a header value.
+     */
+    public static final int DEFAULT_MAXIMUM_HEADER_SIZE = 64 * 1024;
+
+    /**
+     * The default maximum number of failed header fingerprints to remember.
+     */
+    public static final int DEFAULT_NEGATIVE_CACHE_MAXIMUM_SIZE = 256;
+
+    /**
+     * The default time for which a failed header is rejected without being parsed again.
+     */
+    public static final Duration DEFAULT_NEGATIVE_CACHE_TIME_TO_LIVE = Duration.ofMinutes(1);
+
+    /**
+     * The default interval between checks for changes to the trust store.
+     */
+    public static final Duration DEFAULT_TRUST_STORE_CHECK_INTERVAL = Duration.ofSeconds(10);
+
+    /**
+     * The default number of passes over the sample headers when warming up.
+     */
+    public static final int DEFAULT_WARM_UP_ITERATIONS = 1000;
+
+    /**
+     * The name of the header carrying client certificates.
+     */
+    public static final String HEADER = "X-Forwarded-Client-Cert";
+
+    private static final X509Certificate[] NO_CERTIFICATES = new X509Certificate[0];
+
+    private final CacheFile cacheFile;
+
+    private final CertificateCache<X509Certificate> certificateCache;
+
+    private final CertificateCache<X509Certificate[]> chainCache;
+
+    private final ConnectionCache connectionCache;
+
+    private final DerCache derCache;
+
+    private final FailureDiagnostics diagnostics;
+
+    private final FailureCache failureCache;
+
+    private final CertificateCache<X509Certificate[]> hashCache;
+
+    private final ReferenceTable<X509Certificate, InstanceIdentity> identities;
+
+    private final MappingListener listener;
+
+    private final int maximumCertificateSize;
+
+    private final int maximumChainLength;
+
+    private final int maximumHeaderSize;
+
+    private final CertificateParser parser;
+
+    private final CidrTrie trustedProxies;
+
+    private final ChainValidator validator;
+
+    private ClientCertificateEngine(Builder builder) throws CertificateException {
+        this.certificateCache = new CertificateCache<>(builder.cacheMaximumSize, builder.cacheTimeToLive);
+        this.chainCache = new CertificateCache<>(builder.cacheMaximumSize, builder.cacheTimeToLive);
+        this.connectionCache = new ConnectionCache(builder.cacheMaximumSize, builder.cacheTimeToLive);
+        this.derCache = new DerCache(builder.cacheOffHeapCapacity, builder.cacheTimeToLive);
+        this.diagnostics = new FailureDiagnostics(builder.diagnosticsInterval);
+        this.failureCache = new FailureCache(builder.negativeCacheMaximumSize, builder.negativeCacheTimeToLive);
+        this.hashCache = new CertificateCache<>(builder.cacheMaximumSize, builder.cacheTimeToLive);
+        this.identities = new ReferenceTable<>(builder.cacheMaximumSize);
+        this.listener = builder.listener;
+        this.maximumCertificateSize = builder.maximumCertificateSize;
+        this.maximumChainLength = builder.maximumChainLength;
+        this.maximumHeaderSize = builder.maximumHeaderSize;
+        this.parser = new CertificateParser();
+        this.trustedProxies = builder.trustedProxies;
+        this.validator = builder.trustStore == null ? null :
+            new ChainValidator(builder.trustStore, builder.trustStoreCheckInterval, builder.cacheMaximumSize);
+
+        this.cacheFile = builder.cacheFile == null ? null : new CacheFile(builder.cacheFile, builder.cacheFileMaximumSize, builder.cacheTimeToLive);
+        if (this.cacheFile != null) {
+            this.cacheFile.load(this.parser, this.certificateCache);
+        }
+    }
+
+    /**
+     * Returns a new builder, initialized with the default configuration.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the process-wide engine with the default configuration, creating it on first use.  Adapters created without explicit configuration share this
+     * instance, and so share its caches and buffers.
+     *
+     * @return the default engine
+     * @throws CertificateException if no X.509 {@code CertificateFactory} is available
+     */
+    public static ClientCertificateEngine getDefault() throws CertificateException {
+        if (DefaultHolder.FAILURE != null) {
+            throw DefaultHolder.FAILURE;
+        }
+
+        return DefaultHolder.ENGINE;
+    }
+
+    /**
+     * Returns the cached chain for a raw header value, without parsing on a miss.  This allows adapters that must not block to map cached values inline and
+     * defer only the misses.  Misses are not counted, as the deferred {@link #map(CharSequence)} counts them.  If a trust store is configured, a chain is only
+     * returned if it has a current trusted verdict.
+     *
+     * @param rawHeader the raw header value, or {@code null} if the request has none
+     * @return a copy of the cached chain, an empty array if there is no header, or {@code null} if the value is not cached or not known to be trusted
+     */
+    public X509Certificate[] getCachedCertificates(CharSequence rawHeader) {
+        if (rawHeader == null || rawHeader.length() == 0) {
+            this.listener.onAbsent();
+            return NO_CERTIFICATES;
+        }
+
+        if (isTooLarge(rawHeader)) {
+            return null;
+        }
+
+        long start = now();
+
+        MappingEvents.CacheLookupEvent lookup = MappingEvents.cacheLookup("chain", rawHeader.length());
+        X509Certificate[] chain = this.chainCache.peek(rawHeader);
+        if (lookup != null) {
+            lookup.end(chain);
+        }
+
+        if (chain == null || !isKnownTrusted(chain)) {
+            return null;
+        }
+
+        this.listener.onMapped(rawHeader.length(), chain.length, now() - start);
+        return chain.length == 0 ? NO_CERTIFICATES : chain.clone();
+    }
+
+    /**
+     * Returns the cache of individual certificates, keyed by their encoded value.
+     *
+     * @return the certificate cache
+     */
+    public CertificateCache<X509Certificate> getCertificateCache() {
+        return this.certificateCache;
+    }
+
+    /**
+     * Returns the cache of certificate chains, keyed by the raw header value.
+     *
+     * @return the chain cache
+     */
+    public CertificateCache<X509Certificate[]> getChainCache() {
+        return this.chainCache;
+    }
+
+    /**
+     * Returns the off-heap tier of the certificate cache, holding the DER of certificates keyed by their encoded value.
+     *
+     * @return the off-heap cache
+     */
+    public DerCache getDerCache() {
+        return this.derCache;
+    }
+
+    /**
+     * Returns the cache of certificate chains of structured header values, keyed by the {@code Hash} of their leaf certificate.  The hash is trusted as much as
+     * the rest of the header, which is set by the router.
+     *
+     * @return the hash cache
+     */
+    public CertificateCache<X509Certificate[]> getHashCache() {
+        return this.hashCache;
+    }
+
+    /**
+     * Returns the Cloud Foundry instance identity of a certificate.  The identity is extracted from the subject once per certificate instance and memoized, so
+     * for certificates returned by this engine, which are cached, repeat calls cost a table lookup.
+     *
+     * @param certificate the certificate
+     * @return the identity, or {@code null} if the subject has no app, space or organization GUID
+     */
+    public InstanceIdentity getInstanceIdentity(X509Certificate certificate) {
+        InstanceIdentity identity = this.identities.get(certificate);
+
+        if (identity == null) {
+            identity = InstanceIdentity.of(certificate.getSubjectX500Principal());
+            this.identities.put(certificate, identity);
+        }
+
+        return identity == InstanceIdentity.NONE ? null : identity;
+    }
+
+    /**
+     * Returns whether a peer may set the header.  Adapters drop the header of a request from any other peer, as though it were absent, before it is read, so
+     * that traffic reaching the application directly cannot have certificates of its choosing parsed or mapped.  If no trusted proxies are configured, every
+     * peer is trusted.
+     *
+     * @param remoteAddress the literal IPv4 or IPv6 address of the peer, such as the value of {@code ServletRequest.getRemoteAddr()}, or {@code null} if it is
+     *                      not known
+     * @return {@code true} if no trusted proxies are configured or the address is in one of their ranges, otherwise {@code false}
+     */
+    public boolean isTrustedProxy(CharSequence remoteAddress) {
+        return this.trustedProxies == null || this.trustedProxies.contains(remoteAddress);
+    }
+
+    /**
+     * Returns whether a peer may set the header, as {@link #isTrustedProxy(CharSequence)} does.
+     *
+     * @param remoteAddress the address of the peer, or {@code null} if it is not known
+     * @return {@code true} if no trusted proxies are configured or the address is in one of their ranges, otherwise {@code false}
+     */
+    public boolean isTrustedProxy(InetAddress remoteAddress) {
+        return this.trustedProxies == null || remoteAddress != null && this.trustedProxies.contains(remoteAddress.getAddress());
+    }
+
+    /**
+     * Maps a raw header value to a certificate chain.  Multiple header values should be joined with a comma, as described in
+     * <a href=https://tools.ietf.org/html/rfc7230#section-3.2.2>RFC 7230</a>.
+     *
+     * @param rawHeader the raw header value, or {@code null} if the request has none
+     * @return a new array containing the chain, which is empty if the value contains no certificates
+     * @throws ClientCertificateException if the value exceeds a limit, contains an element that is not an encoded certificate, failed to map recently, or is
+     *                                    not trusted
+     */
+    public X509Certificate[] map(CharSequence rawHeader) throws ClientCertificateException {
+        X509Certificate[] chain = mapShared(rawHeader);
+        return chain.length == 0 ? NO_CERTIFICATES : chain.clone();
+    }
+
+    /**
+     * Maps the remaining bytes of a buffer, read as ISO-8859-1, to a certificate chain.  The buffer's position and limit are not changed.
+     *
+     * @param rawHeader the raw header value
+     * @return a new array containing the chain, which is empty if the value contains no certificates
+     * @throws ClientCertificateException if the value exceeds a limit, contains an element that is not an encoded certificate, failed to map recently, or is
+     *                                    not trusted
+     */
+    public X509Certificate[] map(ByteBuffer rawHeader) throws ClientCertificateException {
+        return map(new AsciiSequence(rawHeader));
+    }
+
+    /**
+     * Maps a raw header value to a certificate chain, as {@link #map(CharSequence)} does, reusing the chain last mapped on the same connection if the value is
+     * unchanged.  Every request on an HTTP/2 or keep-alive connection carries the same header, so after the first, the requests of a connection are mapped by
+     * comparing the value with the last rather than by hashing and looking it up.  Chains are held for a bounded number of connections, and are revalidated
+     * as by {@link #map(CharSequence)} once their trusted verdict lapses.
+     *
+     * @param rawHeader    the raw header value, or {@code null} if the request has none
+     * @param connectionId an ID unique to the connection for the life of the container, such as {@code ServletConnection.getConnectionId()}, or {@code null}
+     *                     or empty if it is not known
+     * @return a new array containing the chain, which is empty if the value contains no certificates
+     * @throws ClientCertificateException if the value exceeds a limit, contains an element that is not an encoded certificate, failed to map recently, or is
+     *                                    not trusted
+     */
+    public X509Certificate[] map(CharSequence rawHeader, String connectionId) throws ClientCertificateException {
+        if (connectionId == null || connectionId.isEmpty() || rawHeader == null || rawHeader.length() == 0 || !this.connectionCache.isEnabled()) {
+            return map(rawHeader);
+        }
+
+        long start = now();
+
+        MappingEvents.CacheLookupEvent lookup = MappingEvents.cacheLookup("connection", rawHeader.length());
+        X509Certificate[] chain = this.connectionCache.get(connectionId, rawHeader);
+        if (lookup != null) {
+            lookup.end(chain);
+        }
+
+        if (chain != null && isKnownTrusted(chain)) {
+            this.listener.onMapped(rawHeader.length(), chain.length, now() - start);
+            return chain.clone();
+        }
+
+        chain = mapShared(rawHeader);
+        if (chain.length == 0) {
+            return NO_CERTIFICATES;
+        }
+
+        this.connectionCache.put(connectionId, rawHeader.toString(), chain);
+        return chain.clone();
+    }
+
+    /**
+     * Starts warming up the decode and parse pipeline on a background daemon thread, so that class loading and JIT compilation happen before the first real
+     * request rather than during it.  Bundled sample headers are parsed by a throwaway engine without caches, so this engine's caches, metrics and
+     * diagnostics are not affected.
+     *
+     * @param iterations the number of passes over the sample headers
+     * @return the started thread
+     */
+    public Thread warmUp(int iterations) {
+        Thread thread = new Thread(new WarmUp(iterations), "client-certificate-mapper-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    FailureCache getFailureCache() {
+        return this.failureCache;
+    }
+
+    // Counts the elements of a value, rejecting it if it has too many or any is too large, without decoding anything
+    private int admit(CharSequence rawHeader) throws ClientCertificateException {
+        MappingEvents.ScanEvent event = MappingEvents.scan(rawHeader.length());
+        boolean admitted = false;
+        int count = 0;
+
+        try {
+            for (HeaderTokenizer tokenizer = new HeaderTokenizer(rawHeader); tokenizer.next(); ) {
+                admit(++count, tokenizer.end() - tokenizer.start());
+            }
+
+            admitted = true;
+            return count;
+        } finally {
+            if (event != null) {
+                event.end(count, admitted);
+            }
+        }
+    }
+
+    private void admit(int count, int size) throws ClientCertificateException {
+        if (count > this.maximumChainLength && this.maximumChainLength != 0) {
+            throw new ClientCertificateException(FailureReason.TOO_LARGE,
+                String.format("Header contains more than the maximum of %d certificates", this.maximumChainLength));
+        }
+
+        if (size > this.maximumCertificateSize && this.maximumCertificateSize != 0) {
+            throw new ClientCertificateException(FailureReason.TOO_LARGE,
+                String.format("Header contains a certificate of %d characters, more than the maximum of %d", size, this.maximumCertificateSize));
+        }
+    }
+
+    private ClientCertificateException failed(ClientCertificateException exception, boolean shortCircuited, int headerSize, long start) {
+        this.diagnostics.failed(exception, shortCircuited);
+        MappingEvents.failure(exception.getReason(), headerSize, shortCircuited);
+        this.listener.onFailed(exception.getReason(), headerSize, now() - start);
+        return exception;
+    }
+
+    // Whether a chain needs no validation or has a current trusted verdict, so that it may be returned without being validated again
+    private boolean isKnownTrusted(X509Certificate[] chain) {
+        if (this.validator == null || chain.length == 0) {
+            return true;
+        }
+
+        ChainValidator.Verdict verdict = this.validator.getCachedVerdict(chain);
+        return verdict != null && verdict.isTrusted();
+    }
+
+    private boolean isTooLarge(CharSequence rawHeader) {
+        return this.maximumHeaderSize != 0 && rawHeader.length() > this.maximumHeaderSize;
+    }
+
+    // Maps a raw header value as map(CharSequence) does, but returns the cached chain itself rather than a copy, so that callers holding on to it, such as
+    // the connection cache, present the instance whose verdict the validator memoized
+    private X509Certificate[] mapShared(CharSequence rawHeader) throws ClientCertificateException {
+        if (rawHeader == null || rawHeader.length() == 0) {
+            this.listener.onAbsent();
+            return NO_CERTIFICATES;
+        }
+
+        long start = now();
+
+        if (isTooLarge(rawHeader)) {
+            throw failed(new ClientCertificateException(FailureReason.TOO_LARGE,
+                String.format("Header is %d characters, more than the maximum of %d", rawHeader.length(), this.maximumHeaderSize)), false, rawHeader.length(), start);
+        }
+
+        MappingEvents.CacheLookupEvent lookup = MappingEvents.cacheLookup("chain", rawHeader.length());
+        X509Certificate[] chain = this.chainCache.get(rawHeader);
+        if (lookup != null) {
+            lookup.end(chain);
+        }
+
+        if (chain == null) {
+            chain = parseCertificates(rawHeader, start);
+            this.chainCache.put(rawHeader.toString(), chain);
+        }
+
+        if (this.validator != null && chain.length != 0) {
+            ChainValidator.Verdict verdict = this.validator.validate(chain);
+
+            if (!verdict.isTrusted()) {
+                throw failed(new ClientCertificateException(FailureReason.UNTRUSTED, String.format("Certificate chain is not trusted: %s", verdict.getMessage())),
+                    false, rawHeader.length(), start);
+            }
+        }
+
+        this.listener.onMapped(rawHeader.length(), chain.length, now() - start);
+        return chain;
+    }
+
+    // The clock is only read when someone is listening
+    private long now() {
+        return this.listener == MappingListener.NONE ? 0 : System.nanoTime();
+    }
+
+    // Parses decoded DER, recording the encoding it was decoded from, or null if it was read from the off-heap cache
+    private X509Certificate parse(CertificateBuffer buffer, CertificateEncoding encoding) throws CertificateException {
+        MappingEvents.ParseEvent event = MappingEvents.parse(encoding, buffer.size());
+        X509Certificate certificate = null;
+
+        try {
+            certificate = this.parser.parse(buffer);
+            return certificate;
+        } finally {
+            if (event != null) {
+                event.end(certificate != null);
+            }
+        }
+    }
+
+    // Splits a PEM bundle into certificates, counting and sizing them all before decoding any.  A value that is not PEM is parsed as a single certificate.
+    private X509Certificate[] parseBundle(CharSequence rawHeader, int start, int end) throws ClientCertificateException {
+        CertificateEncoding encoding = CertificateDecoder.classify(rawHeader, start, end);
+
+        if (encoding != CertificateEncoding.PEM && encoding != CertificateEncoding.URL_ENCODED_PEM) {
+            admit(1, end - start);
+            return new X509Certificate[]{ parseCertificate(rawHeader, start, end) };
+        }
+
+        boolean escaped = encoding == CertificateEncoding.URL_ENCODED_PEM;
+
+        int count = 0;
+        for (int position = start; position < end; ) {
+            int next = CertificateDecoder.pemEnd(rawHeader, position, end, escaped);
+            if (next < 0) {
+                throw new ClientCertificateException(FailureReason.UNDECODABLE, "Header contains a certificate chain that is not a sequence of PEMs");
+            }
+
+            admit(++count, next - position);
+            position = next;
+        }
+
+        X509Certificate[] certificates = new X509Certificate[count];
+        for (int i = 0, position = start; i < count; i++) {
+            int next = CertificateDecoder.pemEnd(rawHeader, position, end, escaped);
+            certificates[i] = parseCertificate(rawHeader, position, next);
+            position = next;
+        }
+
+        return certificates;
+    }
+
+    private X509Certificate parseCertificate(CharSequence rawHeader, int start, int end) throws ClientCertificateException {
+        X509Certificate certificate = this.certificateCache.get(rawHeader, start, end);
+
+        if (certificate == null) {
+            CertificateBuffer buffer = CertificateBuffer.acquire();
+
+            try {
+                if (this.derCache.get(rawHeader, start, end, buffer)) {
+                    certificate = parse(buffer, null);
+                } else {
+                    CertificateEncoding encoding = CertificateDecoder.classify(rawHeader, start, end);
+
+                    MappingEvents.DecodeEvent event = MappingEvents.decode(encoding, end - start);
+                    boolean decoded = CertificateDecoder.decode(rawHeader, start, end, encoding, buffer);
+                    if (event != null) {
+                        event.end(decoded);
+                    }
+
+                    if (!decoded) {
+                        throw new ClientCertificateException(FailureReason.UNDECODABLE, "Header contains value that is neither base64 nor url encoded");
+                    }
+
+                    certificate = parse(buffer, encoding);
+                    this.listener.onDecoded(encoding);
+                    this.derCache.put(rawHeader, start, end, buffer);
+
+                    if (this.cacheFile != null) {
+                        this.cacheFile.append(rawHeader, start, end, buffer);
+                    }
+                }
+            } catch (ClientCertificateException e) {
+                throw e;
+            } catch (CertificateException e) {
+                throw new ClientCertificateException(FailureReason.UNPARSEABLE, e.getMessage(), e);
+            } finally {
+                buffer.release();
+            }
+
+            this.certificateCache.put(rawHeader.subSequence(start, end).toString(), certificate);
+        }
+
+        return certificate;
+    }
+
+    private X509Certificate[] parseCertificates(CharSequence rawHeader, long start) throws ClientCertificateException {
+        long fingerprint = this.failureCache.isEnabled() ? FailureCache.fingerprint(rawHeader) : 0;
+
+        FailureReason reason = this.failureCache.get(fingerprint);
+        if (reason != null) {
+            throw failed(new ClientCertificateException(reason, String.format("Header failed recently (%s) and was not parsed again", reason)), true,
+                rawHeader.length(), start);
+        }
+
+        try {
+            if (StructuredHeader.isStructured(rawHeader)) {
+                return parseStructured(rawHeader);
+            }
+
+            X509Certificate[] certificates = new X509Certificate[admit(rawHeader)];
+
+            HeaderTokenizer tokenizer = new HeaderTokenizer(rawHeader);
+            for (int i = 0; tokenizer.next(); i++) {
+                certificates[i] = parseCertificate(rawHeader, tokenizer.start(), tokenizer.end());
+            }
+
+            return certificates;
+        } catch (ClientCertificateException e) {
+            this.failureCache.put(fingerprint, e.getReason());
+            throw failed(e, false, rawHeader.length(), start);
+        }
+    }
+
+    // Maps the first element that carries a certificate, by its Chain if it has one and otherwise by its Cert, skipping decoding if its Hash is cached
+    private X509Certificate[] parseStructured(CharSequence rawHeader) throws ClientCertificateException {
+        for (StructuredHeader header = new StructuredHeader(rawHeader); header.next(); ) {
+            boolean chained = header.chainEnd() > header.chainStart();
+            if (!chained && header.certEnd() <= header.certStart()) {
+                continue;
+            }
+
+            boolean hashed = header.hashEnd() > header.hashStart();
+            if (hashed) {
+                MappingEvents.CacheLookupEvent lookup = MappingEvents.cacheLookup("hash", header.hashEnd() - header.hashStart());
+                X509Certificate[] certificates = this.hashCache.get(rawHeader, header.hashStart(), header.hashEnd());
+                if (lookup != null) {
+                    lookup.end(certificates);
+                }
+
+                if (certificates != null) {
+                    return certificates;
+                }
+            }
+
+            X509Certificate[] certificates = chained ? parseBundle(rawHeader, header.chainStart(), header.chainEnd()) :
+                parseBundle(rawHeader, header.certStart(), header.certEnd());
+
+            if (hashed) {
+                this.hashCache.put(rawHeader.subSequence(header.hashStart(), header.hashEnd()).toString(), certificates);
+            }
+
+            return certificates;
+        }
+
+        return NO_CERTIFICATES;
+    }
+
+    /**
+     * A builder for {@link ClientCertificateEngine} instances.
+     */
+    public static final class Builder {
+
+        private Path cacheFile;
+
+        private int cacheFileMaximumSize = DEFAULT_CACHE_FILE_MAXIMUM_SIZE;
+
+        private int cacheMaximumSize = DEFAULT_CACHE_MAXIMUM_SIZE;
+
+        private int cacheOffHeapCapacity = DEFAULT_CACHE_OFF_HEAP_CAPACITY;
+
+        private Duration cacheTimeToLive = DEFAULT_CACHE_TIME_TO_LIVE;
+
+        private Duration diagnosticsInterval = DEFAULT_DIAGNOSTICS_INTERVAL;
+
+        private MappingListener listener = MappingListener.NONE;
+
+        private int maximumCertificateSize = DEFAULT_MAXIMUM_CERTIFICATE_SIZE;
+
+        private int maximumChainLength = DEFAULT_MAXIMUM_CHAIN_LENGTH;
+
+        private int maximumHeaderSize = DEFAULT_MAXIMUM_HEADER_SIZE;
+
+        private int negativeCacheMaximumSize = DEFAULT_NEGATIVE_CACHE_MAXIMUM_SIZE;
+
+        private Duration negativeCacheTimeToLive = DEFAULT_NEGATIVE_CACHE_TIME_TO_LIVE;
+
+        private Path trustStore;
+
+        private Duration trustStoreCheckInterval = DEFAULT_TRUST_STORE_CHECK_INTERVAL;
+
+        private CidrTrie trustedProxies;
+
+        private Builder() {
+        }
+
+        /**
+         * Builds a new engine.
+         *
+         * @return a new engine
+         * @throws CertificateException if no X.509 {@code CertificateFactory} is available, or the trust store cannot be read
+         */
+        public ClientCertificateEngine build() throws CertificateException {
+            return new ClientCertificateEngine(this);
+        }
+
+        /**
+         * Sets a file in which certificates are persisted as they are first parsed, so that a restarted instance starts with a warm certificate cache.  The
+         * file is loaded, and compacted to its latest certificates if it needs room, when the engine is built.  It tolerates truncation and concurrent
+         * writers, may be deleted at any time, and should be on the instance's local disk.  Failures to read or write it are logged and otherwise ignored.
+         * {@code null}, the default, disables persistence.
+         *
+         * @param cacheFile the path of the file
+         * @return this builder
+         */
+        public Builder cacheFile(Path cacheFile) {
+            this.cacheFile = cacheFile;
+            return this;
+        }
+
+        /**
+         * Sets the maximum size, in bytes, of the cache file.  Certificates are no longer appended once it is reached, until the file is next compacted.
+         *
+         * @param cacheFileMaximumSize the maximum size
+         * @return this builder
+         */
+        public Builder cacheFileMaximumSize(int cacheFileMaximumSize) {
+            this.cacheFileMaximumSize = cacheFileMaximumSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of entries in each cache.  Zero disables caching.
+         *
+         * @param cacheMaximumSize the maximum number of entries
+         * @return this builder
+         */
+        public Builder cacheMaximumSize(int cacheMaximumSize) {
+            this.cacheMaximumSize = cacheMaximumSize;
+            return this;
+        }
+
+        /**
+         * Sets the capacity, in bytes, of the off-heap tier of the certificate cache, rounded down to a power of two.  Certificates are appended to the tier,
+         * as their encoded value and DER, when first parsed, and are parsed again from it when they miss the on-heap cache, so a population of certificates too
+         * large to hold parsed on the heap skips decoding at a fixed heap cost.  The memory is allocated when the engine is built and is not counted against
+         * the heap, but is limited by {@code -XX:MaxDirectMemorySize}.  Zero, the default, disables the tier.
+         *
+         * @param cacheOffHeapCapacity the capacity, in bytes
+         * @return this builder
+         */
+        public Builder cacheOffHeapCapacity(int cacheOffHeapCapacity) {
+            this.cacheOffHeapCapacity = cacheOffHeapCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the time-to-live of cache entries.
+         *
+         * @param cacheTimeToLive the time-to-live
+         * @return this builder
+         */
+        public Builder cacheTimeToLive(Duration cacheTimeToLive) {
+            this.cacheTimeToLive = cacheTimeToLive;
+            return this;
+        }
+
+        /**
+         * Sets the interval between aggregated warnings about headers that cannot be mapped.  Zero warns about every failure.
+         *
+         * @param diagnosticsInterval the interval
+         * @return this builder
+         */
+        public Builder diagnosticsInterval(Duration diagnosticsInterval) {
+            this.diagnosticsInterval = diagnosticsInterval;
+            return this;
+        }
+
+        /**
+         * Sets the listener notified of the work done by the engine.
+         *
+         * @param listener the listener
+         * @return this builder
+         */
+        public Builder listener(MappingListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Sets the maximum size, in characters, of an encoded certificate.  Larger certificates are rejected as {@link FailureReason#TOO_LARGE} before being
+         * decoded.  Zero disables the limit.
+         *
+         * @param maximumCertificateSize the maximum size
+         * @return this builder
+         */
+        public Builder maximumCertificateSize(int maximumCertificateSize) {
+            this.maximumCertificateSize = maximumCertificateSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of certificates in a header.  Headers with more are rejected as {@link FailureReason#TOO_LARGE} before being decoded.  Zero
+         * disables the limit.
+         *
+         * @param maximumChainLength the maximum number of certificates
+         * @return this builder
+         */
+        public Builder maximumChainLength(int maximumChainLength) {
+            this.maximumChainLength = maximumChainLength;
+            return this;
+        }
+
+        /**
+         * Sets the maximum size, in characters, of a header value.  Larger values are rejected as {@link FailureReason#TOO_LARGE} before being looked up,
+         * fingerprinted or decoded.  Zero disables the limit.
+         *
+         * @param maximumHeaderSize the maximum size
+         * @return this builder
+         */
+        public Builder maximumHeaderSize(int maximumHeaderSize) {
+            this.maximumHeaderSize = maximumHeaderSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of failed header fingerprints to remember.  Zero disables the negative cache.
+         *
+         * @param negativeCacheMaximumSize the maximum number of fingerprints
+         * @return this builder
+         */
+        public Builder negativeCacheMaximumSize(int negativeCacheMaximumSize) {
+            this.negativeCacheMaximumSize = negativeCacheMaximumSize;
+            return this;
+        }
+
+        /**
+         * Sets the time for which a failed header is rejected without being parsed again.
+         *
+         * @param negativeCacheTimeToLive the time-to-live
+         * @return this builder
+         */
+        public Builder negativeCacheTimeToLive(Duration negativeCacheTimeToLive) {
+            this.negativeCacheTimeToLive = negativeCacheTimeToLive;
+            return this;
+        }
+
+        /**
+         * Sets a PEM bundle of trust anchors, such as the Cloud Foundry instance identity CA, against which chains are validated.  Chains that do not validate
+         * are rejected as {@link FailureReason#UNTRUSTED}.  {@code null}, the default, disables validation.
+         *
+         * @param trustStore the path of the bundle
+         * @return this builder
+         */
+        public Builder trustStore(Path trustStore) {
+            this.trustStore = trustStore;
+            return this;
+        }
+
+        /**
+         * Sets the interval between checks for changes to the trust store.  The trust anchors are reloaded when the modification time of the bundle changes.
+         * Checks and reloads run on a background thread, never on a request thread.
+         *
+         * @param trustStoreCheckInterval the interval
+         * @return this builder
+         */
+        public Builder trustStoreCheckInterval(Duration trustStoreCheckInterval) {
+            this.trustStoreCheckInterval = trustStoreCheckInterval;
+            return this;
+        }
+
+        /**
+         * Sets the address ranges of the proxies, such as the Cloud Foundry routers, that may set the header, in CIDR notation such as {@code 10.0.0.0/8} or
+         * {@code 2001:db8::/32}, or as single addresses.  The header of a request from any other peer is dropped before it is decoded.  The ranges are compiled
+         * into a prefix trie, so checking a peer costs the same however many there are.  {@code null} or empty, the default, trusts every peer.
+         *
+         * @param trustedProxies the address ranges
+         * @return this builder
+         * @throws IllegalArgumentException if a range is not a valid IPv4 or IPv6 address with an optional prefix length
+         */
+        public Builder trustedProxies(Collection<String> trustedProxies) {
+            this.trustedProxies = trustedProxies == null || trustedProxies.isEmpty() ? null : new CidrTrie(trustedProxies);
+            return this;
+        }
+
+    }
+
+    // Builds the default engine when first used, exactly once, however many threads race to use it
+    private static final class DefaultHolder {
+
+        private static final ClientCertificateEngine ENGINE;
+
+        private static final CertificateException FAILURE;
+
+        static {
+            ClientCertificateEngine engine = null;
+            CertificateException failure = null;
+
+            try {
+                engine = builder().build();
+            } catch (CertificateException e) {
+                failure = e;
+            }
+
+            ENGINE = engine;
+            FAILURE = failure;
+        }
+
+    }
+
+}
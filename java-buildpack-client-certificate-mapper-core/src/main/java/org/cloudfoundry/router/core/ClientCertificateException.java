@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.security.cert.CertificateException;
+
+/**
+ * Thrown when an {@code X-Forwarded-Client-Cert} value cannot be mapped, carrying the {@link FailureReason}.  As it describes bad input rather than a fault,
+ * it carries no stack trace of its own, so that a caller repeatedly sending a bad header does not pay for one on every request.  Any underlying exception from
+ * the {@code CertificateFactory} is kept as its cause.
+ */
+public final class ClientCertificateException extends CertificateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final FailureReason reason;
+
+    ClientCertificateException(FailureReason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    ClientCertificateException(FailureReason reason, String message, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    @Override
+    public Throwable fillInStackTrace() {
+        return this;
+    }
+
+    /**
+     * Returns why the value could not be mapped.
+     *
+     * @return the reason
+     */
+    public FailureReason getReason() {
+        return this.reason;
+    }
+
+}
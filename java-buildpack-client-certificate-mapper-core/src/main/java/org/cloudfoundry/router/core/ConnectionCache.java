@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The chain last mapped on each of a bounded number of connections, so that the requests of a connection, such as the streams of an HTTP/2 connection or the
+ * requests of a keep-alive one, which carry the same header, reuse its chain after comparing the header rather than hashing it and looking it up again.  The
+ * table is direct-mapped by connection ID: a connection replaces whichever connection shares its slot.  The servlet API gives no notice of a connection
+ * closing, so the entry of a closed connection is replaced by a later connection sharing its slot, or expires after a fixed time-to-live.  Connection IDs are
+ * unique for the life of the container, so it is never matched by another connection.  A cache with a maximum size of zero is disabled and never holds an
+ * entry.
+ */
+final class ConnectionCache {
+
+    private final AtomicReferenceArray<Entry> entries;
+
+    private final long timeToLive;
+
+    ConnectionCache(int maximumSize, Duration timeToLive) {
+        this.entries = new AtomicReferenceArray<>(maximumSize <= 0 ? 0 : Integer.highestOneBit(maximumSize));
+        this.timeToLive = timeToLive.toNanos();
+    }
+
+    // Returns the chain last mapped on the connection, if it was mapped from the same header
+    X509Certificate[] get(String connectionId, CharSequence rawHeader) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        int index = index(connectionId);
+        Entry entry = this.entries.get(index);
+
+        if (entry == null || !entry.connectionId.equals(connectionId)) {
+            return null;
+        }
+
+        if (System.nanoTime() - entry.expires >= 0) {
+            this.entries.compareAndSet(index, entry, null);
+            return null;
+        }
+
+        return entry.rawHeader == rawHeader || entry.rawHeader.contentEquals(rawHeader) ? entry.chain : null;
+    }
+
+    boolean isEnabled() {
+        return this.entries.length() != 0;
+    }
+
+    void put(String connectionId, String rawHeader, X509Certificate[] chain) {
+        if (isEnabled()) {
+            this.entries.set(index(connectionId), new Entry(connectionId, rawHeader, chain, System.nanoTime() + this.timeToLive));
+        }
+    }
+
+    int size() {
+        long now = System.nanoTime();
+
+        int size = 0;
+        for (int i = 0; i < this.entries.length(); i++) {
+            Entry entry = this.entries.get(i);
+
+            if (entry != null && now - entry.expires < 0) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    private int index(String connectionId) {
+        int h = connectionId.hashCode();
+        return (h ^ (h >>> 16)) & (this.entries.length() - 1);
+    }
+
+    private static final class Entry {
+
+        private final X509Certificate[] chain;
+
+        private final String connectionId;
+
+        private final long expires;
+
+        private final String rawHeader;
+
+        private Entry(String connectionId, String rawHeader, X509Certificate[] chain, long expires) {
+            this.connectionId = connectionId;
+            this.rawHeader = rawHeader;
+            this.chain = chain;
+            this.expires = expires;
+        }
+
+    }
+
+}
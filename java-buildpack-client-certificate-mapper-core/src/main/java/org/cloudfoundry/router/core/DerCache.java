@@ -0,0 +1,312 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A bounded, off-heap cache of DER encoded certificates, keyed by their encoded value, that backs the engine's cache of parsed certificates.  A population of
+ * certificates too large to hold parsed on the heap can be held here at a fixed cost: entries are appended to a ring of bytes in a single direct buffer, so the
+ * oldest are overwritten first, and the heap holds only a small set-associative index of fingerprints.  Each entry holds its encoded value as well as its DER,
+ * so a hit is an exact match rather than a fingerprint match, and saves decoding but not parsing.  Readers are optimistic: they read without locking, and
+ * fall back to a read lock only if an entry was appended concurrently.  A cache with a capacity of zero is disabled and never holds an entry.  Statistics are
+ * exposed publicly so that adapters can report them; reads and writes are reserved to the {@link ClientCertificateEngine}.
+ */
+public final class DerCache {
+
+    // Typical size of an instance identity certificate's encoded value and DER together, by which the index is sized
+    private static final int ESTIMATED_ENTRY_SIZE = 4096;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final int WAYS = 4;
+
+    private final ByteBuffer arena;
+
+    private final int capacity;
+
+    private final AtomicReferenceArray<Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final StampedLock lock = new StampedLock();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final int sets;
+
+    private final long timeToLive;
+
+    private volatile long head;
+
+    DerCache(int capacity, Duration timeToLive) {
+        this.capacity = capacity <= 0 ? 0 : Integer.highestOneBit(capacity);
+        this.arena = this.capacity == 0 ? null : ByteBuffer.allocateDirect(this.capacity);
+        this.sets = this.capacity == 0 ? 0 : Integer.highestOneBit(Math.max(1, this.capacity / ESTIMATED_ENTRY_SIZE / WAYS));
+        this.entries = new AtomicReferenceArray<>(this.sets * WAYS);
+        this.timeToLive = timeToLive.toNanos();
+    }
+
+    /**
+     * Returns the capacity of the cache, in bytes of off-heap memory.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Removes all entries from the cache.  The off-heap memory is retained.
+     */
+    public void clear() {
+        for (int i = 0; i < this.entries.length(); i++) {
+            this.entries.set(i, null);
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found a live entry.
+     *
+     * @return the number of hits
+     */
+    public long hitCount() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that did not find a live entry.  Lookups against a disabled cache are not counted.
+     *
+     * @return the number of misses
+     */
+    public long missCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Returns the number of live entries in the cache.
+     *
+     * @return the number of live entries
+     */
+    public int size() {
+        long now = System.nanoTime();
+
+        int size = 0;
+        for (int i = 0; i < this.entries.length(); i++) {
+            Entry entry = this.entries.get(i);
+
+            if (entry != null && !entry.isExpired(now) && isLive(entry)) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    // Copies the DER of the encoded value source[start, end) into the buffer, returning whether it was found
+    boolean get(CharSequence source, int start, int end, CertificateBuffer buffer) {
+        if (this.sets == 0) {
+            return false;
+        }
+
+        long fingerprint = fingerprint(source, start, end);
+        int base = index(fingerprint);
+        long now = System.nanoTime();
+
+        for (int i = base; i < base + WAYS; i++) {
+            Entry entry = this.entries.get(i);
+
+            if (entry != null && entry.fingerprint == fingerprint && entry.keyLength == end - start) {
+                if (entry.isExpired(now)) {
+                    this.entries.compareAndSet(i, entry, null);
+                    break;
+                }
+
+                long stamp = this.lock.tryOptimisticRead();
+                boolean found = read(entry, source, start, buffer);
+
+                if (!this.lock.validate(stamp)) {
+                    stamp = this.lock.readLock();
+                    try {
+                        found = read(entry, source, start, buffer);
+                    } finally {
+                        this.lock.unlockRead(stamp);
+                    }
+                }
+
+                if (found) {
+                    this.hits.increment();
+                    return true;
+                }
+
+                if (!isLive(entry)) {
+                    this.entries.compareAndSet(i, entry, null);
+                }
+            }
+        }
+
+        this.misses.increment();
+        return false;
+    }
+
+    boolean isEnabled() {
+        return this.sets != 0;
+    }
+
+    // Appends the encoded value source[start, end) and the DER written to the buffer.  Values that are not ISO-8859-1 are not cached.
+    void put(CharSequence source, int start, int end, CertificateBuffer buffer) {
+        int keyLength = end - start;
+        int length = keyLength + buffer.size();
+
+        if (this.sets == 0 || length > this.capacity) {
+            return;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (source.charAt(i) > 0xFF) {
+                return;
+            }
+        }
+
+        long fingerprint = fingerprint(source, start, end);
+        long position;
+
+        long stamp = this.lock.writeLock();
+        try {
+            // Entries never wrap, so an entry that does not fit before the end of the ring starts the next lap
+            int offset = offset(this.head);
+            if (offset + length > this.capacity) {
+                this.head += this.capacity - offset;
+            }
+
+            position = this.head;
+            this.head += length;
+
+            offset = offset(position);
+            for (int i = 0; i < keyLength; i++) {
+                this.arena.put(offset + i, (byte) source.charAt(start + i));
+            }
+            buffer.copyTo(this.arena, offset + keyLength);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+
+        int base = index(fingerprint);
+        long now = System.nanoTime();
+
+        int victim = -1;
+        long victimExpiry = 0;
+
+        for (int i = base; i < base + WAYS; i++) {
+            Entry entry = this.entries.get(i);
+
+            if (entry == null || entry.isExpired(now) || !isLive(entry) || entry.fingerprint == fingerprint) {
+                victim = i;
+                break;
+            }
+
+            if (victim == -1 || entry.expires - victimExpiry < 0) {
+                victim = i;
+                victimExpiry = entry.expires;
+            }
+        }
+
+        this.entries.set(victim, new Entry(fingerprint, position, keyLength, buffer.size(), now + this.timeToLive));
+    }
+
+    // FNV-1a over the characters of the value
+    private static long fingerprint(CharSequence source, int start, int end) {
+        long h = FNV_OFFSET_BASIS;
+
+        for (int i = start; i < end; i++) {
+            h ^= source.charAt(i);
+            h *= FNV_PRIME;
+        }
+
+        return h;
+    }
+
+    private int index(long fingerprint) {
+        return ((int) (fingerprint ^ (fingerprint >>> 32)) & (this.sets - 1)) * WAYS;
+    }
+
+    // An entry is overwritten once the ring has advanced a full lap past its start
+    private boolean isLive(Entry entry) {
+        return this.head - entry.position <= this.capacity;
+    }
+
+    private int offset(long position) {
+        return (int) (position & (this.capacity - 1));
+    }
+
+    // May see a torn entry if an append races with it, in which case the caller's validation fails and it reads again under the lock
+    private boolean read(Entry entry, CharSequence source, int start, CertificateBuffer buffer) {
+        if (!isLive(entry)) {
+            return false;
+        }
+
+        int offset = offset(entry.position);
+
+        for (int i = 0; i < entry.keyLength; i++) {
+            char c = source.charAt(start + i);
+
+            if (c > 0xFF || (byte) c != this.arena.get(offset + i)) {
+                return false;
+            }
+        }
+
+        buffer.clear(entry.derLength);
+        for (int i = 0; i < entry.derLength; i++) {
+            buffer.write(this.arena.get(offset + entry.keyLength + i));
+        }
+
+        return true;
+    }
+
+    private static final class Entry {
+
+        private final int derLength;
+
+        private final long expires;
+
+        private final long fingerprint;
+
+        private final int keyLength;
+
+        private final long position;
+
+        private Entry(long fingerprint, long position, int keyLength, int derLength, long expires) {
+            this.fingerprint = fingerprint;
+            this.position = position;
+            this.keyLength = keyLength;
+            this.derLength = derLength;
+            this.expires = expires;
+        }
+
+        private boolean isExpired(long now) {
+            return now - this.expires >= 0;
+        }
+
+    }
+
+}
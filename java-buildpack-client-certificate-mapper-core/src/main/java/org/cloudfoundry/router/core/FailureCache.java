@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded cache of recently failed {@code X-Forwarded-Client-Cert} values, so that a caller repeatedly sending the same bad header is rejected without
+ * decoding or parsing it again.  Values are held only as 64-bit fingerprints, so that arbitrarily large bad headers are not retained.  The table is
+ * direct-mapped: a new failure replaces whichever failure shares its slot, and entries expire after a fixed time-to-live so that a header fixed upstream is
+ * not rejected for long.  A cache with a maximum size of zero is disabled and never holds an entry.
+ */
+final class FailureCache {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicReferenceArray<Entry> entries;
+
+    private final long timeToLive;
+
+    FailureCache(int maximumSize, Duration timeToLive) {
+        this.entries = new AtomicReferenceArray<>(maximumSize <= 0 ? 0 : Integer.highestOneBit(maximumSize));
+        this.timeToLive = timeToLive.toNanos();
+    }
+
+    // FNV-1a over the characters of the value
+    static long fingerprint(CharSequence value) {
+        long h = FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+
+        return h;
+    }
+
+    FailureReason get(long fingerprint) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        int index = index(fingerprint);
+        Entry entry = this.entries.get(index);
+
+        if (entry == null || entry.fingerprint != fingerprint) {
+            return null;
+        }
+
+        if (System.nanoTime() - entry.expires >= 0) {
+            this.entries.compareAndSet(index, entry, null);
+            return null;
+        }
+
+        return entry.reason;
+    }
+
+    boolean isEnabled() {
+        return this.entries.length() != 0;
+    }
+
+    void put(long fingerprint, FailureReason reason) {
+        if (isEnabled()) {
+            this.entries.set(index(fingerprint), new Entry(fingerprint, reason, System.nanoTime() + this.timeToLive));
+        }
+    }
+
+    int size() {
+        long now = System.nanoTime();
+
+        int size = 0;
+        for (int i = 0; i < this.entries.length(); i++) {
+            Entry entry = this.entries.get(i);
+
+            if (entry != null && now - entry.expires < 0) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    private int index(long fingerprint) {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) & (this.entries.length() - 1);
+    }
+
+    private static final class Entry {
+
+        private final long expires;
+
+        private final long fingerprint;
+
+        private final FailureReason reason;
+
+        private Entry(long fingerprint, FailureReason reason, long expires) {
+            this.fingerprint = fingerprint;
+            this.reason = reason;
+            this.expires = expires;
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Aggregates mapping failures into at most one warning per interval, so that a caller repeatedly sending bad headers cannot flood the log.  The first failure
+ * is reported immediately.  Later failures are counted by {@link FailureReason}, and the counts are reported together with the first failure after the
+ * interval has elapsed, along with a sample message and how many of the failures were short-circuited by the {@link FailureCache}.  Recording a failure
+ * takes no locks.
+ */
+final class FailureDiagnostics {
+
+    private static final FailureReason[] REASONS = FailureReason.values();
+
+    private final LongAdder[] failures = new LongAdder[REASONS.length];
+
+    private final long interval;
+
+    private final Logger logger = Logger.getLogger(ClientCertificateEngine.class.getName());
+
+    private final AtomicLong nextReport;
+
+    private final AtomicReference<String> sample = new AtomicReference<>();
+
+    private final LongAdder shortCircuited = new LongAdder();
+
+    private volatile long windowStart;
+
+    FailureDiagnostics(Duration interval) {
+        for (int i = 0; i < this.failures.length; i++) {
+            this.failures[i] = new LongAdder();
+        }
+
+        this.interval = interval.toNanos();
+        this.windowStart = System.nanoTime();
+        this.nextReport = new AtomicLong(this.windowStart);
+    }
+
+    void failed(ClientCertificateException exception, boolean shortCircuited) {
+        this.failures[exception.getReason().ordinal()].increment();
+
+        if (shortCircuited) {
+            this.shortCircuited.increment();
+        }
+
+        if (this.sample.get() == null) {
+            this.sample.compareAndSet(null, exception.getMessage());
+        }
+
+        long now = System.nanoTime();
+        long next = this.nextReport.get();
+
+        if (now - next >= 0 && this.nextReport.compareAndSet(next, now + this.interval)) {
+            report(now);
+        }
+    }
+
+    private void report(long now) {
+        long elapsed = TimeUnit.NANOSECONDS.toSeconds(now - this.windowStart);
+        this.windowStart = now;
+
+        long total = 0;
+        StringBuilder reasons = new StringBuilder();
+        for (FailureReason reason : REASONS) {
+            long count = this.failures[reason.ordinal()].sumThenReset();
+
+            if (count != 0) {
+                reasons.append(reasons.length() == 0 ? "" : ", ").append(reason).append('=').append(count);
+                total += count;
+            }
+        }
+
+        long shortCircuited = this.shortCircuited.sumThenReset();
+        String sample = this.sample.getAndSet(null);
+
+        if (total != 0 && this.logger.isLoggable(Level.WARNING)) {
+            this.logger.warning(String.format("Unable to parse certificates in X-Forwarded-Client-Cert: %d failure(s) in the last %ds (%s), %d short-circuited; " +
+                "for example: %s", total, elapsed, reasons, shortCircuited, sample));
+        }
+    }
+
+}
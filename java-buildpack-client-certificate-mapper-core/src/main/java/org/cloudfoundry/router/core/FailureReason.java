@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+/**
+ * Why an {@code X-Forwarded-Client-Cert} value could not be mapped.
+ */
+public enum FailureReason {
+
+    /**
+     * The value exceeds a configured limit on its size, its number of elements, or the size of an element, and was rejected before being decoded.
+     */
+    TOO_LARGE,
+
+    /**
+     * An element of the value is neither base64 nor URL encoded.
+     */
+    UNDECODABLE,
+
+    /**
+     * An element of the value decodes, but not to a certificate the {@code CertificateFactory} accepts.
+     */
+    UNPARSEABLE,
+
+    /**
+     * The value maps to a chain that does not validate against the configured trust store.
+     */
+    UNTRUSTED
+
+}
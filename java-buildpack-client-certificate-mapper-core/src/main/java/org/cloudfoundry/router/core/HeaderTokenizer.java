@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+/**
+ * Walks the comma delimited elements of an {@code X-Forwarded-Client-Cert} value in place, exposing each as a range of the value rather than as a substring.
+ * Empty elements, and whitespace around elements, are skipped as described in <a href=https://tools.ietf.org/html/rfc7230#section-7>RFC 7230</a>.
+ */
+final class HeaderTokenizer {
+
+    private final CharSequence value;
+
+    private int end;
+
+    private int position;
+
+    private int start;
+
+    HeaderTokenizer(CharSequence value) {
+        this.value = value;
+    }
+
+    static int count(CharSequence value) {
+        int count = 0;
+
+        for (HeaderTokenizer tokenizer = new HeaderTokenizer(value); tokenizer.next(); ) {
+            count++;
+        }
+
+        return count;
+    }
+
+    int end() {
+        return this.end;
+    }
+
+    boolean next() {
+        int length = this.value.length();
+
+        while (this.position < length && isDelimiter(this.value.charAt(this.position))) {
+            this.position++;
+        }
+
+        if (this.position == length) {
+            return false;
+        }
+
+        this.start = this.position;
+        while (this.position < length && this.value.charAt(this.position) != ',') {
+            this.position++;
+        }
+
+        this.end = this.position;
+        while (isWhitespace(this.value.charAt(this.end - 1))) {
+            this.end--;
+        }
+
+        return true;
+    }
+
+    int start() {
+        return this.start;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == ',' || isWhitespace(c);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.security.auth.x500.X500Principal;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The Cloud Foundry instance identity carried by the subject of a client certificate: the app, space and organization GUIDs from its {@code OU=app:},
+ * {@code OU=space:} and {@code OU=organization:} components, and the instance ID from its {@code CN}.  The identity is extracted once per distinct
+ * certificate, and GUIDs are held as pairs of longs, so that authorization decisions can compare them with field reads instead of parsing the subject on
+ * every request.  Instances are immutable.
+ */
+public final class InstanceIdentity {
+
+    /**
+     * The name of the request attribute carrying the identity of the leaf certificate, if it has one.
+     */
+    public static final String ATTRIBUTE = "org.cloudfoundry.router.InstanceIdentity";
+
+    static final InstanceIdentity NONE = new InstanceIdentity(null, null, null, null);
+
+    private static final String APP = "app:";
+
+    private static final String ORGANIZATION = "organization:";
+
+    private static final String SPACE = "space:";
+
+    private final long appGuidHigh;
+
+    private final long appGuidLow;
+
+    private final String instanceId;
+
+    private final long organizationGuidHigh;
+
+    private final long organizationGuidLow;
+
+    private final long spaceGuidHigh;
+
+    private final long spaceGuidLow;
+
+    private InstanceIdentity(UUID appGuid, UUID spaceGuid, UUID organizationGuid, String instanceId) {
+        this.appGuidHigh = appGuid == null ? 0 : appGuid.getMostSignificantBits();
+        this.appGuidLow = appGuid == null ? 0 : appGuid.getLeastSignificantBits();
+        this.instanceId = instanceId;
+        this.organizationGuidHigh = organizationGuid == null ? 0 : organizationGuid.getMostSignificantBits();
+        this.organizationGuidLow = organizationGuid == null ? 0 : organizationGuid.getLeastSignificantBits();
+        this.spaceGuidHigh = spaceGuid == null ? 0 : spaceGuid.getMostSignificantBits();
+        this.spaceGuidLow = spaceGuid == null ? 0 : spaceGuid.getLeastSignificantBits();
+    }
+
+    // Returns NONE, rather than null, so that certificates without an identity can be memoized too
+    static InstanceIdentity of(X500Principal subject) {
+        UUID appGuid = null;
+        String instanceId = null;
+        UUID organizationGuid = null;
+        UUID spaceGuid = null;
+
+        try {
+            for (Rdn rdn : new LdapName(subject.getName(X500Principal.RFC2253)).getRdns()) {
+                if (!(rdn.getValue() instanceof String)) {
+                    continue;
+                }
+
+                String value = (String) rdn.getValue();
+
+                if ("CN".equalsIgnoreCase(rdn.getType())) {
+                    instanceId = value;
+                } else if ("OU".equalsIgnoreCase(rdn.getType())) {
+                    if (value.startsWith(APP)) {
+                        appGuid = guid(value, APP);
+                    } else if (value.startsWith(ORGANIZATION)) {
+                        organizationGuid = guid(value, ORGANIZATION);
+                    } else if (value.startsWith(SPACE)) {
+                        spaceGuid = guid(value, SPACE);
+                    }
+                }
+            }
+        } catch (InvalidNameException e) {
+            return NONE;
+        }
+
+        if (appGuid == null && organizationGuid == null && spaceGuid == null) {
+            return NONE;
+        }
+
+        return new InstanceIdentity(appGuid, spaceGuid, organizationGuid, instanceId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InstanceIdentity)) {
+            return false;
+        }
+
+        InstanceIdentity that = (InstanceIdentity) o;
+        return this.appGuidHigh == that.appGuidHigh && this.appGuidLow == that.appGuidLow
+            && this.organizationGuidHigh == that.organizationGuidHigh && this.organizationGuidLow == that.organizationGuidLow
+            && this.spaceGuidHigh == that.spaceGuidHigh && this.spaceGuidLow == that.spaceGuidLow
+            && Objects.equals(this.instanceId, that.instanceId);
+    }
+
+    /**
+     * Returns the GUID of the app.
+     *
+     * @return the GUID, or {@code null} if the certificate has no {@code OU=app:} component
+     */
+    public UUID getAppGuid() {
+        return uuid(this.appGuidHigh, this.appGuidLow);
+    }
+
+    /**
+     * Returns the ID of the app instance.
+     *
+     * @return the ID, or {@code null} if the certificate has no {@code CN}
+     */
+    public String getInstanceId() {
+        return this.instanceId;
+    }
+
+    /**
+     * Returns the GUID of the organization.
+     *
+     * @return the GUID, or {@code null} if the certificate has no {@code OU=organization:} component
+     */
+    public UUID getOrganizationGuid() {
+        return uuid(this.organizationGuidHigh, this.organizationGuidLow);
+    }
+
+    /**
+     * Returns the GUID of the space.
+     *
+     * @return the GUID, or {@code null} if the certificate has no {@code OU=space:} component
+     */
+    public UUID getSpaceGuid() {
+        return uuid(this.spaceGuidHigh, this.spaceGuidLow);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.appGuidHigh ^ this.appGuidLow);
+    }
+
+    /**
+     * Returns whether the identity belongs to an app.  Compares without allocating.
+     *
+     * @param appGuid the GUID of the app
+     * @return {@code true} if the identity belongs to the app
+     */
+    public boolean isApp(UUID appGuid) {
+        return matches(appGuid, this.appGuidHigh, this.appGuidLow);
+    }
+
+    /**
+     * Returns whether the identity belongs to an organization.  Compares without allocating.
+     *
+     * @param organizationGuid the GUID of the organization
+     * @return {@code true} if the identity belongs to the organization
+     */
+    public boolean isOrganization(UUID organizationGuid) {
+        return matches(organizationGuid, this.organizationGuidHigh, this.organizationGuidLow);
+    }
+
+    /**
+     * Returns whether the identity belongs to a space.  Compares without allocating.
+     *
+     * @param spaceGuid the GUID of the space
+     * @return {@code true} if the identity belongs to the space
+     */
+    public boolean isSpace(UUID spaceGuid) {
+        return matches(spaceGuid, this.spaceGuidHigh, this.spaceGuidLow);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InstanceIdentity{app=%s, space=%s, organization=%s, instance=%s}", getAppGuid(), getSpaceGuid(), getOrganizationGuid(),
+            this.instanceId);
+    }
+
+    private static UUID guid(String value, String prefix) {
+        try {
+            return UUID.fromString(value.substring(prefix.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // The nil UUID marks an absent GUID, as Cloud Foundry never assigns it
+    private static boolean matches(UUID guid, long high, long low) {
+        return guid != null && (high != 0 || low != 0) && guid.getMostSignificantBits() == high && guid.getLeastSignificantBits() == low;
+    }
+
+    private static UUID uuid(long high, long low) {
+        return high == 0 && low == 0 ? null : new UUID(high, low);
+    }
+
+}
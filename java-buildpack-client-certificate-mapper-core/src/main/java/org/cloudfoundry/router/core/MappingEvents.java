@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.security.cert.X509Certificate;
+
+/**
+ * JDK Flight Recorder events for the stages of mapping a header, so that the time a request spends in the mapper can be attributed from a recording.  The
+ * events are disabled by default, and must be enabled by name in the recording's settings.  Each factory method returns a begun event only if its type is
+ * enabled, and otherwise {@code null} without allocating or reading the clock, so callers pay a field read when no recording asks for them.  Flight Recorder
+ * is not part of every Java 8 runtime, so its classes are only loaded once it is known to be available.
+ */
+final class MappingEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private MappingEvents() {
+    }
+
+    static CacheLookupEvent cacheLookup(String cache, int size) {
+        if (!AVAILABLE || !Types.CACHE_LOOKUP.isEnabled()) {
+            return null;
+        }
+
+        CacheLookupEvent event = new CacheLookupEvent();
+        event.cache = cache;
+        event.size = size;
+        event.begin();
+        return event;
+    }
+
+    static DecodeEvent decode(CertificateEncoding encoding, int size) {
+        if (!AVAILABLE || !Types.DECODE.isEnabled()) {
+            return null;
+        }
+
+        DecodeEvent event = new DecodeEvent();
+        event.encoding = encoding.name();
+        event.size = size;
+        event.begin();
+        return event;
+    }
+
+    static void failure(FailureReason reason, int size, boolean shortCircuited) {
+        if (!AVAILABLE || !Types.FAILURE.isEnabled()) {
+            return;
+        }
+
+        FailureEvent event = new FailureEvent();
+        event.outcome = reason.name();
+        event.shortCircuited = shortCircuited;
+        event.size = size;
+        event.commit();
+    }
+
+    static ParseEvent parse(CertificateEncoding encoding, int size) {
+        if (!AVAILABLE || !Types.PARSE.isEnabled()) {
+            return null;
+        }
+
+        ParseEvent event = new ParseEvent();
+        event.encoding = encoding == null ? null : encoding.name();
+        event.size = size;
+        event.begin();
+        return event;
+    }
+
+    static ScanEvent scan(int size) {
+        if (!AVAILABLE || !Types.SCAN.isEnabled()) {
+            return null;
+        }
+
+        ScanEvent event = new ScanEvent();
+        event.size = size;
+        event.begin();
+        return event;
+    }
+
+    private static boolean isAvailable() {
+        try {
+            return FlightRecorder.isAvailable();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    @Category({"Cloud Foundry", "Client Certificate Mapper"})
+    @Enabled(false)
+    @StackTrace(false)
+    abstract static class MappingEvent extends Event {
+
+        @Label("Chain Length")
+        @Description("Number of certificates in the header or chain")
+        int chainLength;
+
+        @Label("Encoding")
+        @Description("Encoding of the certificate")
+        String encoding;
+
+        @Label("Outcome")
+        String outcome;
+
+        @DataAmount
+        @Label("Size")
+        @Description("Size of the header, encoded certificate or DER")
+        int size;
+
+    }
+
+    @Name("org.cloudfoundry.router.CacheLookup")
+    @Label("Client Certificate Cache Lookup")
+    @Description("Lookup of a header in the connection or chain cache, or of a structured header's hash in the hash cache")
+    static final class CacheLookupEvent extends MappingEvent {
+
+        @Label("Cache")
+        String cache;
+
+        void end(X509Certificate[] chain) {
+            if (chain == null) {
+                this.outcome = "miss";
+            } else {
+                this.chainLength = chain.length;
+                this.outcome = "hit";
+            }
+
+            commit();
+        }
+
+    }
+
+    @Name("org.cloudfoundry.router.CertificateDecode")
+    @Label("Client Certificate Decode")
+    @Description("Decoding of a certificate from its encoding in the header to DER")
+    static final class DecodeEvent extends MappingEvent {
+
+        void end(boolean decoded) {
+            this.outcome = decoded ? "decoded" : "undecodable";
+            commit();
+        }
+
+    }
+
+    @Name("org.cloudfoundry.router.MappingFailure")
+    @Label("Client Certificate Mapping Failure")
+    @Description("Header that could not be mapped, with the reason as its outcome")
+    static final class FailureEvent extends MappingEvent {
+
+        @Label("Short-Circuited")
+        @Description("Whether the header was rejected without parsing because it failed recently")
+        boolean shortCircuited;
+
+    }
+
+    @Name("org.cloudfoundry.router.CertificateParse")
+    @Label("Client Certificate Parse")
+    @Description("Parsing of a certificate's DER, decoded from the header or read from the off-heap cache, by the certificate factory")
+    static final class ParseEvent extends MappingEvent {
+
+        void end(boolean parsed) {
+            this.outcome = parsed ? "parsed" : "unparseable";
+            commit();
+        }
+
+    }
+
+    @Name("org.cloudfoundry.router.HeaderScan")
+    @Label("Client Certificate Header Scan")
+    @Description("Scan of a header counting and sizing its certificates against the limits, before any are decoded")
+    static final class ScanEvent extends MappingEvent {
+
+        void end(int chainLength, boolean admitted) {
+            this.chainLength = chainLength;
+            this.outcome = admitted ? "admitted" : "rejected";
+            commit();
+        }
+
+    }
+
+    // Holds the event types, so that they are only registered with Flight Recorder once it is known to be available
+    private static final class Types {
+
+        private static final EventType CACHE_LOOKUP = EventType.getEventType(CacheLookupEvent.class);
+
+        private static final EventType DECODE = EventType.getEventType(DecodeEvent.class);
+
+        private static final EventType FAILURE = EventType.getEventType(FailureEvent.class);
+
+        private static final EventType PARSE = EventType.getEventType(ParseEvent.class);
+
+        private static final EventType SCAN = EventType.getEventType(ScanEvent.class);
+
+    }
+
+}
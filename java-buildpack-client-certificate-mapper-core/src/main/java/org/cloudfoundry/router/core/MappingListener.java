@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+/**
+ * Receives notifications of the work done by a {@link ClientCertificateEngine}, for example to record metrics.  Notifications are made on the thread doing the
+ * work, so implementations must be thread-safe and should return quickly.  All methods do nothing by default.
+ */
+public interface MappingListener {
+
+    /**
+     * A listener that ignores all notifications.
+     */
+    MappingListener NONE = new MappingListener() {
+
+    };
+
+    /**
+     * Called when a request carries no header, or an empty one.
+     */
+    default void onAbsent() {
+    }
+
+    /**
+     * Called when a certificate is decoded, rather than served from the cache.
+     *
+     * @param encoding the encoding of the certificate
+     */
+    default void onDecoded(CertificateEncoding encoding) {
+    }
+
+    /**
+     * Called when a header cannot be mapped, including when it is rejected because it failed recently.
+     *
+     * @param reason     why the header could not be mapped
+     * @param headerSize the length of the raw header value
+     * @param duration   the time taken, in nanoseconds
+     */
+    default void onFailed(FailureReason reason, int headerSize, long duration) {
+    }
+
+    /**
+     * Called when a header is mapped, whether from the cache or by parsing.
+     *
+     * @param headerSize  the length of the raw header value
+     * @param chainLength the number of certificates in the chain, which may be zero if the header contains only delimiters
+     * @param duration    the time taken, in nanoseconds
+     */
+    default void onMapped(int headerSize, int chainLength, long duration) {
+    }
+
+}
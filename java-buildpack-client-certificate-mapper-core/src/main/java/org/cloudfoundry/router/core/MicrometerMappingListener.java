@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link MappingListener} that records Micrometer meters.  Micrometer is an optional dependency, so this class is only loaded when a registry is present.
+ * The following meters are registered:
+ * <ul>
+ *     <li>{@code client.certificate.mapper.duration}, a timer with a percentile histogram of the time taken to map a header</li>
+ *     <li>{@code client.certificate.mapper.requests}, a counter of requests tagged by {@code outcome}: {@code none}, {@code parsed}, {@code failed}
+ *     or {@code rejected}, for headers exceeding a limit</li>
+ *     <li>{@code client.certificate.mapper.certificates}, a counter of decoded certificates tagged by {@code encoding}: {@code base64} or
+ *     {@code url-encoded}</li>
+ *     <li>{@code client.certificate.mapper.chain.length}, a distribution of the number of certificates in mapped chains</li>
+ *     <li>{@code client.certificate.mapper.header.size}, a distribution of the size of raw header values</li>
+ * </ul>
+ */
+public final class MicrometerMappingListener implements MappingListener {
+
+    private static final String PREFIX = "client.certificate.mapper";
+
+    private final Counter base64;
+
+    private final DistributionSummary chainLength;
+
+    private final Timer duration;
+
+    private final Counter failed;
+
+    private final DistributionSummary headerSize;
+
+    private final Counter none;
+
+    private final Counter parsed;
+
+    private final Counter rejected;
+
+    private final Counter urlEncoded;
+
+    /**
+     * Creates a new instance, registering its meters with a registry.
+     *
+     * @param registry the registry to register meters with
+     */
+    public MicrometerMappingListener(MeterRegistry registry) {
+        this.base64 = certificates(registry, "base64");
+        this.chainLength = DistributionSummary.builder(PREFIX + ".chain.length")
+            .description("Number of certificates in mapped X-Forwarded-Client-Cert chains")
+            .baseUnit("certificates")
+            .publishPercentileHistogram()
+            .register(registry);
+        this.duration = Timer.builder(PREFIX + ".duration")
+            .description("Time taken to map the X-Forwarded-Client-Cert header of a request")
+            .publishPercentileHistogram()
+            .register(registry);
+        this.failed = requests(registry, "failed");
+        this.headerSize = DistributionSummary.builder(PREFIX + ".header.size")
+            .description("Size of raw X-Forwarded-Client-Cert header values")
+            .baseUnit("bytes")
+            .publishPercentileHistogram()
+            .register(registry);
+        this.none = requests(registry, "none");
+        this.parsed = requests(registry, "parsed");
+        this.rejected = requests(registry, "rejected");
+        this.urlEncoded = certificates(registry, "url-encoded");
+    }
+
+    @Override
+    public void onAbsent() {
+        this.none.increment();
+    }
+
+    @Override
+    public void onDecoded(CertificateEncoding encoding) {
+        if (encoding == CertificateEncoding.BASE64 || encoding == CertificateEncoding.PEM) {
+            this.base64.increment();
+        } else {
+            this.urlEncoded.increment();
+        }
+    }
+
+    @Override
+    public void onFailed(FailureReason reason, int headerSize, long duration) {
+        if (reason == FailureReason.TOO_LARGE) {
+            this.rejected.increment();
+        } else {
+            this.failed.increment();
+        }
+
+        this.headerSize.record(headerSize);
+        this.duration.record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onMapped(int headerSize, int chainLength, long duration) {
+        if (chainLength == 0) {
+            this.none.increment();
+        } else {
+            this.parsed.increment();
+            this.chainLength.record(chainLength);
+        }
+
+        this.headerSize.record(headerSize);
+        this.duration.record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    private static Counter certificates(MeterRegistry registry, String encoding) {
+        return Counter.builder(PREFIX + ".certificates")
+            .description("Certificates decoded from X-Forwarded-Client-Cert headers")
+            .tag("encoding", encoding)
+            .register(registry);
+    }
+
+    private static Counter requests(MeterRegistry registry, String outcome) {
+        return Counter.builder(PREFIX + ".requests")
+            .description("Requests processed by the client certificate mapper")
+            .tag("outcome", outcome)
+            .register(registry);
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, direct-mapped table of values memoized against keys by identity.  The engine's caches hand out the same certificate and chain instances for
+ * as long as they hold them, so an identity match is both the cheapest possible lookup and an exact one: no two distinct keys can ever share a value.  A new
+ * entry replaces whichever entry shares its slot, and lookups and updates take no locks.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+final class ReferenceTable<K, V> {
+
+    private final AtomicReferenceArray<Entry<K, V>> entries;
+
+    ReferenceTable(int maximumSize) {
+        this.entries = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(maximumSize, 1)));
+    }
+
+    V get(K key) {
+        Entry<K, V> entry = this.entries.get(index(key));
+        return entry == null || entry.key != key ? null : entry.value;
+    }
+
+    void put(K key, V value) {
+        this.entries.set(index(key), new Entry<>(key, value));
+    }
+
+    private int index(K key) {
+        return System.identityHashCode(key) & (this.entries.length() - 1);
+    }
+
+    private static final class Entry<K, V> {
+
+        private final K key;
+
+        private final V value;
+
+        private Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+    }
+
+}
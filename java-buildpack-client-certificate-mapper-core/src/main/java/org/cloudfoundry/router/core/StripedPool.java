@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free pool of reusable objects.  Objects are held in slots, and each thread starts looking for one at a slot chosen by its id, so that threads
+ * running on different cores rarely touch the same slot.  Unlike a {@link ThreadLocal}, the number of pooled objects does not grow with the number of threads,
+ * which matters when requests run on short-lived virtual threads.
+ *
+ * @param <T> the type of the pooled objects
+ */
+final class StripedPool<T> {
+
+    private final AtomicReferenceArray<T> slots;
+
+    StripedPool() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    StripedPool(int size) {
+        this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+    }
+
+    /**
+     * Takes an object from the pool.
+     *
+     * @return a pooled object, or {@code null} if the pool is empty
+     */
+    T acquire() {
+        int length = this.slots.length();
+        int start = start(length);
+
+        for (int i = 0; i < length; i++) {
+            int index = (start + i) % length;
+
+            if (this.slots.get(index) != null) {
+                T value = this.slots.getAndSet(index, null);
+
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns an object to the pool.  If the pool is full the object is discarded.
+     *
+     * @param value the object to return
+     */
+    void release(T value) {
+        int length = this.slots.length();
+        int start = start(length);
+
+        for (int i = 0; i < length; i++) {
+            if (this.slots.compareAndSet((start + i) % length, null, value)) {
+                return;
+            }
+        }
+    }
+
+    private static int start(int length) {
+        @SuppressWarnings("deprecation")
+        long id = Thread.currentThread().getId();
+        return (int) ((id ^ (id >>> 32)) & Integer.MAX_VALUE) % length;
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+/**
+ * Walks the elements of an Envoy-style structured {@code X-Forwarded-Client-Cert} value, such as {@code By=...;Hash=...;Cert="...";Chain="..."}, in place,
+ * exposing the {@code Hash}, {@code Cert} and {@code Chain} values of each element as ranges of the value rather than as substrings.  Elements are separated
+ * by commas and their key-value pairs by semicolons, except within double-quoted values, in which a backslash escapes the next character.  Keys are matched
+ * case-insensitively, and other keys are skipped.
+ */
+final class StructuredHeader {
+
+    private static final String[] KEYS = new String[]{ "By", "Cert", "Chain", "DNS", "Hash", "Subject", "URI" };
+
+    private final CharSequence value;
+
+    private int certEnd;
+
+    private int certStart;
+
+    private int chainEnd;
+
+    private int chainStart;
+
+    private int hashEnd;
+
+    private int hashStart;
+
+    private int keyEnd;
+
+    private int keyStart;
+
+    private int position;
+
+    private int valueEnd;
+
+    private int valueStart;
+
+    StructuredHeader(CharSequence value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns whether a value is in the structured form, by whether it starts with one of the keys Envoy sets, followed by {@code =}.  The base64 and PEM
+     * forms never do.
+     *
+     * @param value the value
+     * @return {@code true} if the value is in the structured form
+     */
+    static boolean isStructured(CharSequence value) {
+        int length = value.length();
+
+        int start = 0;
+        while (start < length && isWhitespace(value.charAt(start))) {
+            start++;
+        }
+
+        int end = start;
+        while (end < length && isLetter(value.charAt(end))) {
+            end++;
+        }
+
+        if (end == length || value.charAt(end) != '=') {
+            return false;
+        }
+
+        for (String key : KEYS) {
+            if (matches(value, start, end, key)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    int certEnd() {
+        return this.certEnd;
+    }
+
+    int certStart() {
+        return this.certStart;
+    }
+
+    int chainEnd() {
+        return this.chainEnd;
+    }
+
+    int chainStart() {
+        return this.chainStart;
+    }
+
+    int hashEnd() {
+        return this.hashEnd;
+    }
+
+    int hashStart() {
+        return this.hashStart;
+    }
+
+    /**
+     * Advances to the next element.  The ranges of its {@code Hash}, {@code Cert} and {@code Chain} values start at {@code -1} if the element has none.
+     *
+     * @return {@code true} if there is another element
+     */
+    boolean next() {
+        this.certStart = this.certEnd = this.chainStart = this.chainEnd = this.hashStart = this.hashEnd = -1;
+
+        int length = this.value.length();
+        while (this.position < length && (this.value.charAt(this.position) == ',' || isWhitespace(this.value.charAt(this.position)))) {
+            this.position++;
+        }
+
+        if (this.position == length) {
+            return false;
+        }
+
+        while (nextPair()) {
+            if (matches(this.value, this.keyStart, this.keyEnd, "Cert")) {
+                this.certStart = this.valueStart;
+                this.certEnd = this.valueEnd;
+            } else if (matches(this.value, this.keyStart, this.keyEnd, "Chain")) {
+                this.chainStart = this.valueStart;
+                this.chainEnd = this.valueEnd;
+            } else if (matches(this.value, this.keyStart, this.keyEnd, "Hash")) {
+                this.hashStart = this.valueStart;
+                this.hashEnd = this.valueEnd;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == ';' || c == ',';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static boolean matches(CharSequence value, int start, int end, String key) {
+        if (end - start != key.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.toLowerCase(value.charAt(start + i)) != Character.toLowerCase(key.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Reads the next key-value pair of the current element, stopping at the comma that ends it
+    private boolean nextPair() {
+        int length = this.value.length();
+
+        while (this.position < length && (this.value.charAt(this.position) == ';' || isWhitespace(this.value.charAt(this.position)))) {
+            this.position++;
+        }
+
+        if (this.position == length || this.value.charAt(this.position) == ',') {
+            return false;
+        }
+
+        this.keyStart = this.position;
+        while (this.position < length && !isDelimiter(this.value.charAt(this.position)) && this.value.charAt(this.position) != '=') {
+            this.position++;
+        }
+
+        this.keyEnd = this.position;
+        while (this.keyEnd > this.keyStart && isWhitespace(this.value.charAt(this.keyEnd - 1))) {
+            this.keyEnd--;
+        }
+
+        if (this.position == length || this.value.charAt(this.position) != '=') {
+            this.valueStart = this.valueEnd = this.position;
+            return true;
+        }
+
+        this.position++;
+        while (this.position < length && isWhitespace(this.value.charAt(this.position))) {
+            this.position++;
+        }
+
+        boolean quoted = this.position < length && this.value.charAt(this.position) == '"';
+        if (quoted) {
+            this.valueStart = ++this.position;
+
+            while (this.position < length && this.value.charAt(this.position) != '"') {
+                this.position += this.value.charAt(this.position) == '\\' ? 2 : 1;
+            }
+
+            this.valueEnd = Math.min(this.position, length);
+        } else {
+            this.valueStart = this.position;
+        }
+
+        while (this.position < length && !isDelimiter(this.value.charAt(this.position))) {
+            this.position++;
+        }
+
+        if (!quoted) {
+            this.valueEnd = this.position;
+            while (this.valueEnd > this.valueStart && isWhitespace(this.value.charAt(this.valueEnd - 1))) {
+                this.valueEnd--;
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.cert.CertificateException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class CacheFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void compacted() throws CertificateException, InterruptedException, IOException {
+        Path file = this.directory.resolve("cache");
+        ClientCertificateEngine writer = ClientCertificateEngine.builder().cacheFile(file).build();
+        writer.map(ClientCertificateEngineTest.CERTIFICATE_1);
+        writer.map(ClientCertificateEngineTest.CERTIFICATE_2);
+        writer.map(ClientCertificateEngineTest.NGINX_ESCAPED_CERT);
+        BackgroundExecutor.await();
+        long size = Files.size(file);
+
+        ClientCertificateEngine.builder().cacheFile(file).cacheFileMaximumSize((int) size).build();
+
+        assertThat(Files.size(file)).isLessThan(size);
+        assertThat(this.directory.toFile().list()).containsExactly("cache");
+        assertThat(ClientCertificateEngine.builder().cacheFile(file).build().getCertificateCache().size()).isEqualTo(1);
+    }
+
+    @Test
+    public void corrupted() throws CertificateException, InterruptedException, IOException {
+        Path file = this.directory.resolve("cache");
+        ClientCertificateEngine writer = ClientCertificateEngine.builder().cacheFile(file).build();
+        writer.map(ClientCertificateEngineTest.CERTIFICATE_1);
+        writer.map(ClientCertificateEngineTest.CERTIFICATE_2);
+        BackgroundExecutor.await();
+
+        byte[] content = Files.readAllBytes(file);
+        byte[] corrupted = new byte[content.length + 64];
+        Arrays.fill(corrupted, 0, 32, (byte) 'X');
+        System.arraycopy(content, 0, corrupted, 32, content.length);
+        Arrays.fill(corrupted, 32 + content.length, corrupted.length, (byte) 'X');
+        corrupted[32 + 40] ^= 1;
+        Files.write(file, corrupted);
+
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().cacheFile(file).build();
+
+        assertThat(engine.getCertificateCache().size()).isEqualTo(1);
+    }
+
+    @Test
+    public void deferred() throws CertificateException, InterruptedException, IOException {
+        Path file = this.directory.resolve("cache");
+        ClientCertificateEngine writer = ClientCertificateEngine.builder().cacheFile(file).build();
+        CountDownLatch blocked = new CountDownLatch(1);
+        BackgroundExecutor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        try {
+            writer.map(ClientCertificateEngineTest.CERTIFICATE_1);
+
+            assertThat(Files.size(file)).isZero();
+        } finally {
+            blocked.countDown();
+        }
+
+        BackgroundExecutor.await();
+        assertThat(Files.size(file)).isPositive();
+    }
+
+    @Test
+    public void deleted() throws CertificateException, InterruptedException, IOException {
+        Path file = this.directory.resolve("cache");
+        ClientCertificateEngine writer = ClientCertificateEngine.builder().cacheFile(file).build();
+        writer.map(ClientCertificateEngineTest.CERTIFICATE_1);
+        BackgroundExecutor.await();
+
+        Files.delete(file);
+        writer.map(ClientCertificateEngineTest.CERTIFICATE_2);
+        BackgroundExecutor.await();
+
+        assertThat(ClientCertificateEngine.builder().cacheFile(file).build().getCertificateCache().size()).isZero();
+    }
+
+    @Test
+    public void expired() throws CertificateException, InterruptedException {
+        Path file = this.directory.resolve("cache");
+        ClientCertificateEngine.builder().cacheFile(file).build().map(ClientCertificateEngineTest.CERTIFICATE_1);
+        BackgroundExecutor.await();
+
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().cacheFile(file).cacheTimeToLive(Duration.ZERO).build();
+
+        assertThat(engine.getCertificateCache().size()).isZero();
+    }
+
+    @Test
+    public void loaded() throws CertificateException, InterruptedException {
+        Path file = this.directory.resolve("cache");
+        ClientCertificateEngine writer = ClientCertificateEngine.builder().cacheFile(file).build();
+        writer.map(String.format("%s,%s", ClientCertificateEngineTest.CERTIFICATE_1, ClientCertificateEngineTest.CERTIFICATE_2));
+        writer.map(ClientCertificateEngineTest.NGINX_ESCAPED_CERT);
+        BackgroundExecutor.await();
+
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().cacheFile(file).build();
+        engine.map(String.format("%s,%s", ClientCertificateEngineTest.CERTIFICATE_1, ClientCertificateEngineTest.CERTIFICATE_2));
+
+        assertThat(engine.getCertificateCache().size()).isEqualTo(3);
+        assertThat(engine.getCertificateCache().hitCount()).isEqualTo(2);
+        assertThat(engine.getCertificateCache().missCount()).isZero();
+    }
+
+    @Test
+    public void maximumSize() throws CertificateException, InterruptedException, IOException {
+        Path file = this.directory.resolve("cache");
+        ClientCertificateEngine writer = ClientCertificateEngine.builder().cacheFile(file).cacheFileMaximumSize(3000).build();
+        writer.map(ClientCertificateEngineTest.CERTIFICATE_1);
+        writer.map(ClientCertificateEngineTest.CERTIFICATE_2);
+        writer.map(ClientCertificateEngineTest.NGINX_ESCAPED_CERT);
+        BackgroundExecutor.await();
+
+        assertThat(Files.size(file)).isPositive().isLessThanOrEqualTo(3000);
+    }
+
+    @Test
+    public void truncated() throws CertificateException, InterruptedException, IOException {
+        Path file = this.directory.resolve("cache");
+        ClientCertificateEngine writer = ClientCertificateEngine.builder().cacheFile(file).build();
+        writer.map(ClientCertificateEngineTest.CERTIFICATE_1);
+        writer.map(ClientCertificateEngineTest.CERTIFICATE_2);
+        BackgroundExecutor.await();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().cacheFile(file).build();
+
+        assertThat(engine.getCertificateCache().size()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class CertificateCacheTest {
+
+    @Test
+    public void bounded() {
+        CertificateCache<String> cache = new CertificateCache<>(16, Duration.ofHours(1));
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(String.valueOf(i), String.valueOf(i));
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(16);
+    }
+
+    @Test
+    public void clear() {
+        CertificateCache<String> cache = new CertificateCache<>(16, Duration.ofHours(1));
+        cache.put("test-key", "test-value");
+
+        cache.clear();
+
+        assertThat(cache.get("test-key")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void disabled() {
+        CertificateCache<String> cache = new CertificateCache<>(0, Duration.ofHours(1));
+        cache.put("test-key", "test-value");
+
+        assertThat(cache.get("test-key")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void expired() {
+        CertificateCache<String> cache = new CertificateCache<>(16, Duration.ZERO);
+        cache.put("test-key", "test-value");
+
+        assertThat(cache.get("test-key")).isNull();
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void hit() {
+        CertificateCache<String> cache = new CertificateCache<>(16, Duration.ofHours(1));
+        cache.put("test-key", "test-value");
+
+        assertThat(cache.get("test-key")).isEqualTo("test-value");
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isZero();
+    }
+
+    @Test
+    public void miss() {
+        CertificateCache<String> cache = new CertificateCache<>(16, Duration.ofHours(1));
+
+        assertThat(cache.get("test-key")).isNull();
+        assertThat(cache.hitCount()).isZero();
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void peek() {
+        CertificateCache<String> cache = new CertificateCache<>(16, Duration.ofHours(1));
+
+        assertThat(cache.peek("test-key")).isNull();
+        cache.put("test-key", "test-value");
+
+        assertThat(cache.peek("test-key")).isEqualTo("test-value");
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isZero();
+    }
+
+    @Test
+    public void range() {
+        CertificateCache<String> cache = new CertificateCache<>(16, Duration.ofHours(1));
+        cache.put("test-key", "test-value");
+
+        assertThat(cache.get(new StringBuilder("prefix,test-key,suffix"), 7, 15)).isEqualTo("test-value");
+        assertThat(cache.get(new StringBuilder("test-key"))).isEqualTo("test-value");
+    }
+
+    @Test
+    public void replace() {
+        CertificateCache<String> cache = new CertificateCache<>(16, Duration.ofHours(1));
+        cache.put("test-key", "test-value-1");
+        cache.put("test-key", "test-value-2");
+
+        assertThat(cache.get("test-key")).isEqualTo("test-value-2");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class CertificateDecoderTest {
+
+    private final CertificateBuffer buffer = CertificateBuffer.acquire();
+
+    @Test
+    public void base64() {
+        for (int length = 0; length < 16; length++) {
+            byte[] expected = new byte[length];
+            for (int i = 0; i < length; i++) {
+                expected[i] = (byte) (i * 37);
+            }
+
+            String encoded = Base64.getEncoder().encodeToString(expected);
+
+            assertThat(CertificateDecoder.decodeBase64(encoded, 0, encoded.length(), this.buffer)).isTrue();
+            assertThat(contents()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void base64InvalidCharacter() {
+        assertThat(CertificateDecoder.decodeBase64("dGVz%A==", 0, 8, this.buffer)).isFalse();
+    }
+
+    @Test
+    public void base64InvalidPadding() {
+        assertThat(CertificateDecoder.decodeBase64("dGVzdA=", 0, 7, this.buffer)).isFalse();
+        assertThat(CertificateDecoder.decodeBase64("dGVzdA==dA==", 0, 12, this.buffer)).isFalse();
+        assertThat(CertificateDecoder.decodeBase64("d", 0, 1, this.buffer)).isFalse();
+    }
+
+    @Test
+    public void base64Range() {
+        assertThat(CertificateDecoder.decodeBase64("xx,dGVzdA==,yy", 3, 11, this.buffer)).isTrue();
+        assertThat(contents()).isEqualTo("test".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void base64Unpadded() {
+        assertThat(CertificateDecoder.decodeBase64("dGVzdA", 0, 6, this.buffer)).isTrue();
+        assertThat(contents()).isEqualTo("test".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void classify() {
+        assertThat(classify("dGVzdA==")).isEqualTo(CertificateEncoding.BASE64);
+        assertThat(classify("-----BEGIN CERTIFICATE----- dGVzdA== -----END CERTIFICATE-----")).isEqualTo(CertificateEncoding.PEM);
+        assertThat(classify("%2D%2D%2D%2D%2DBEGIN%20CERTIFICATE%2D%2D%2D%2D%2D")).isEqualTo(CertificateEncoding.URL_ENCODED_PEM);
+        assertThat(classify("-----BEGIN%20CERTIFICATE-----")).isEqualTo(CertificateEncoding.URL_ENCODED_PEM);
+        assertThat(classify("test%20value")).isEqualTo(CertificateEncoding.URL_ENCODED);
+        assertThat(classify("test value")).isEqualTo(CertificateEncoding.URL_ENCODED);
+    }
+
+    @Test
+    public void decode() {
+        assertThat(CertificateDecoder.decode("test%20value", 0, 12, this.buffer)).isTrue();
+        assertThat(contents()).isEqualTo("test value".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void pem() {
+        String value = "-----BEGIN CERTIFICATE----- dGVz dA== -----END CERTIFICATE-----";
+
+        assertThat(CertificateDecoder.decodePem(value, 0, value.length(), false, this.buffer)).isTrue();
+        assertThat(contents()).isEqualTo("test".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void pemEscaped() throws UnsupportedEncodingException {
+        byte[] expected = new byte[300];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) (i * 37);
+        }
+
+        String pem = String.format("-----BEGIN CERTIFICATE-----\r\n%s\r\n-----END CERTIFICATE-----\r\n",
+            Base64.getMimeEncoder(64, new byte[]{'\r', '\n'}).encodeToString(expected));
+        String value = URLEncoder.encode(pem, "utf-8").replace("-", "%2D");
+
+        assertThat(CertificateDecoder.decodePem(value, 0, value.length(), true, this.buffer)).isTrue();
+        assertThat(contents()).isEqualTo(expected);
+    }
+
+    @Test
+    public void pemInvalid() {
+        assertThat(CertificateDecoder.decodePem("-----BEGIN CERTIFICATE----- dGVz", 0, 32, false, this.buffer)).isFalse();
+        assertThat(CertificateDecoder.decodePem("-----BEGIN CERTIFICATE", 0, 22, false, this.buffer)).isFalse();
+        assertThat(CertificateDecoder.decodePem("-----BEGIN%2", 0, 12, true, this.buffer)).isFalse();
+    }
+
+    @Test
+    public void pemEnd() {
+        String value = "-----BEGIN CERTIFICATE----- dGVz dA== -----END CERTIFICATE-----\r\n-----BEGIN CERTIFICATE----- dGVz -----END CERTIFICATE-----";
+
+        assertThat(CertificateDecoder.pemEnd(value, 0, value.length(), false)).isEqualTo(value.indexOf("-----BEGIN", 1));
+        assertThat(CertificateDecoder.pemEnd(value, value.indexOf("-----BEGIN", 1), value.length(), false)).isEqualTo(value.length());
+    }
+
+    @Test
+    public void pemEndEscaped() {
+        String value = "%2D%2D%2D%2D%2DBEGIN%20C%2D%2D%2D%2D%2D%0AdGVz%0A%2D%2D%2D%2D%2DEND%20C%2D%2D%2D%2D%2D%0A";
+
+        assertThat(CertificateDecoder.pemEnd(value, 0, value.length(), true)).isEqualTo(value.length());
+    }
+
+    @Test
+    public void pemEndIncomplete() {
+        assertThat(CertificateDecoder.pemEnd("-----BEGIN CERTIFICATE----- dGVz -----END CERT", 0, 46, false)).isEqualTo(-1);
+        assertThat(CertificateDecoder.pemEnd("dGVz", 0, 4, false)).isEqualTo(-1);
+    }
+
+    @Test
+    public void url() {
+        assertThat(CertificateDecoder.decodeUrl("%2D%2da+b%0A", 0, 12, this.buffer)).isTrue();
+        assertThat(contents()).isEqualTo("--a b\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void urlInvalidEscape() {
+        assertThat(CertificateDecoder.decodeUrl("test%2", 0, 6, this.buffer)).isFalse();
+        assertThat(CertificateDecoder.decodeUrl("test%zz", 0, 7, this.buffer)).isFalse();
+    }
+
+    private static CertificateEncoding classify(String value) {
+        return CertificateDecoder.classify(value, 0, value.length());
+    }
+
+    private byte[] contents() {
+        byte[] contents = new byte[this.buffer.size()];
+        this.buffer.read(contents, 0, contents.length);
+        return contents;
+    }
+
+}
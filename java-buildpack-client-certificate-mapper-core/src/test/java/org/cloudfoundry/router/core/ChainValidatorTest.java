@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public final class ChainValidatorTest {
+
+    private static final String CA = "" +
+        "MIIBoDCCAUegAwIBAgIUMGNI7R6hQJy+4xPF7VgbGYCIIE8wCgYIKoZIzj0EAwIw" +
+        "HTEbMBkGA1UEAwwSaW5zdGFuY2VJZGVudGl0eUNBMCAXDTI2MTAxODA5MjUwNloY" +
+        "DzIxMjYwOTI0MDkyNTA2WjAdMRswGQYDVQQDDBJpbnN0YW5jZUlkZW50aXR5Q0Ew" +
+        "WTATBgcqhkjOPQIBBggqhkjOPQMBBwNCAASIWXm8zkWra8vL0fyxZYmzO7JcGXlz" +
+        "tcRJQ/LQzF2hUYu46RfwhyzFkw2gwHV57XOu82ExX0zb6Pnd/1tn+n34o2MwYTAd" +
+        "BgNVHQ4EFgQUCTjoqyqBwx1xAoHwTX+dE8DJX7owHwYDVR0jBBgwFoAUCTjoqyqB" +
+        "wx1xAoHwTX+dE8DJX7owDwYDVR0TAQH/BAUwAwEB/zAOBgNVHQ8BAf8EBAMCAgQw" +
+        "CgYIKoZIzj0EAwIDRwAwRAIgBmpmnPI0ULMNFwabCrVEmYXRRykjzLhJWnJwXPQb" +
+        "ntQCIALi4VS5K0DtFlIrs+TYpDONXhKtkgcOMLk7p5gyOWUg";
+
+    private static final String LEAF = "" +
+        "MIIB6TCCAZCgAwIBAgIUbbEZyHnd9aJK4AGofI8FmSGrXrwwCgYIKoZIzj0EAwIw" +
+        "HTEbMBkGA1UEAwwSaW5zdGFuY2VJZGVudGl0eUNBMCAXDTI2MTAxODA5MjUwN1oY" +
+        "DzIxMjYwOTI0MDkyNTA3WjBiMTEwLwYDVQQLDChhcHA6MjMyODJmZDEtMzViNC00" +
+        "NWRkLWE2MDItOGY3NmY0YTYwZDExMS0wKwYDVQQDDCQwODdmNWZkYy05OGQ3LTQw" +
+        "YzAtNjRkMy1mZDk1YWY4MzE5OGQwWTATBgcqhkjOPQIBBggqhkjOPQMBBwNCAAQ2" +
+        "JHIrS8v+bTp3/wNtUXtzSxiG97nA8XWUXx1U4KH0n/Tp2tP7HWRiiWyEX0zLLGT1" +
+        "xYLiR3uhZpOX8cwM8QS8o2cwZTAOBgNVHQ8BAf8EBAMCB4AwEwYDVR0lBAwwCgYI" +
+        "KwYBBQUHAwIwHQYDVR0OBBYEFAZ3d350dg9cT0MyVCs8s0bssIVKMB8GA1UdIwQY" +
+        "MBaAFAk46KsqgcMdcQKB8E1/nRPAyV+6MAoGCCqGSM49BAMCA0cAMEQCIFFEmxEZ" +
+        "bn1RzOM9ME6IQ2hYHw3WPww9DLjd2Iel/+5LAiB7xJ3oqRna8/O95gpnEdjBZ9bR" +
+        "M+7nGMETLjJenaKQCA==";
+
+    private static final String OTHER_CA = "" +
+        "MIIBjDCCATGgAwIBAgIUGrulm0shKmX5nP5CJ7ckGgnQCUEwCgYIKoZIzj0EAwIw" +
+        "EjEQMA4GA1UEAwwHb3RoZXJDQTAgFw0yNjEwMTgwOTI1MDZaGA8yMTI2MDkyNDA5" +
+        "MjUwNlowEjEQMA4GA1UEAwwHb3RoZXJDQTBZMBMGByqGSM49AgEGCCqGSM49AwEH" +
+        "A0IABPMOVoeG8d49tKpgmKIXbMB+71QmKgw+xFZ36FM1Axy8OWuPmD4hsfDAi+sg" +
+        "JGLsRNLsFE0jnKCICXJndF+xj1mjYzBhMB0GA1UdDgQWBBTAdnHHkVMwbgFho9mJ" +
+        "IRFOGfxHeDAfBgNVHSMEGDAWgBTAdnHHkVMwbgFho9mJIRFOGfxHeDAPBgNVHRMB" +
+        "Af8EBTADAQH/MA4GA1UdDwEB/wQEAwICBDAKBggqhkjOPQQDAgNJADBGAiEAtqpG" +
+        "8QUVKVaOi8gBwYE73tuvO2G0PMPWJHCx6zHGLeoCIQDL+7tYwS6edY3aphNia+H9" +
+        "GVU7UOs9sZnYhnHBH/RH5w==";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void cachedVerdict() throws CertificateException, IOException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().trustStore(trustStore(CA)).build();
+
+        assertThat(engine.getCachedCertificates(LEAF)).isNull();
+        assertThat(engine.map(LEAF)).hasSize(1);
+        assertThat(engine.getCachedCertificates(LEAF)).hasSize(1);
+    }
+
+    @Test
+    public void connection() throws CertificateException, IOException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().trustStore(trustStore(CA)).build();
+
+        X509Certificate[] first = engine.map(LEAF, "test-connection");
+        X509Certificate[] second = engine.map(LEAF, "test-connection");
+        X509Certificate[] third = engine.map(LEAF, "test-connection");
+
+        assertThat(second).isNotSameAs(first).containsExactly(first);
+        assertThat(third).isNotSameAs(second).containsExactly(first);
+        assertThat(engine.getChainCache().hitCount()).isZero();
+        assertThat(engine.getChainCache().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void emptyTrustStore() throws IOException {
+        Path trustStore = Files.write(this.directory.resolve("empty.pem"), new byte[0]);
+
+        assertThatExceptionOfType(CertificateException.class)
+            .isThrownBy(() -> ClientCertificateEngine.builder().trustStore(trustStore).build());
+    }
+
+    @Test
+    public void memoizedVerdict() throws CertificateException, IOException {
+        ChainValidator validator = new ChainValidator(trustStore(CA), Duration.ofHours(1), 16);
+        X509Certificate[] chain = new X509Certificate[]{ certificate(LEAF) };
+
+        assertThat(validator.getCachedVerdict(chain)).isNull();
+
+        ChainValidator.Verdict verdict = validator.validate(chain);
+        assertThat(verdict.isTrusted()).isTrue();
+        assertThat(validator.validate(chain)).isSameAs(verdict);
+        assertThat(validator.getCachedVerdict(new X509Certificate[]{ certificate(LEAF) })).isNull();
+    }
+
+    @Test
+    public void reloadedTrustStore() throws CertificateException, IOException {
+        Path trustStore = trustStore(CA);
+        ChainValidator validator = new ChainValidator(trustStore, Duration.ofHours(1), 16);
+        X509Certificate[] chain = new X509Certificate[]{ certificate(LEAF) };
+
+        assertThat(validator.validate(chain).isTrusted()).isTrue();
+
+        FileTime lastModified = Files.getLastModifiedTime(trustStore);
+        Files.write(trustStore, pem(OTHER_CA).getBytes(StandardCharsets.US_ASCII));
+        Files.setLastModifiedTime(trustStore, FileTime.fromMillis(lastModified.toMillis() + 60_000));
+
+        assertThat(validator.validate(chain).isTrusted()).isTrue();
+
+        validator.reload();
+
+        assertThat(validator.validate(chain).isTrusted()).isFalse();
+    }
+
+    @Test
+    public void reloadedTrustStoreInBackground() throws CertificateException, IOException, InterruptedException {
+        Path trustStore = trustStore(CA);
+        ChainValidator validator = new ChainValidator(trustStore, Duration.ofMillis(10), 16);
+        X509Certificate[] chain = new X509Certificate[]{ certificate(LEAF) };
+
+        assertThat(validator.validate(chain).isTrusted()).isTrue();
+
+        FileTime lastModified = Files.getLastModifiedTime(trustStore);
+        Files.write(trustStore, pem(OTHER_CA).getBytes(StandardCharsets.US_ASCII));
+        Files.setLastModifiedTime(trustStore, FileTime.fromMillis(lastModified.toMillis() + 60_000));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (validator.validate(chain).isTrusted() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(validator.validate(chain).isTrusted()).isFalse();
+    }
+
+    @Test
+    public void trustedChain() throws CertificateException, IOException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().trustStore(trustStore(OTHER_CA, CA)).build();
+
+        assertThat(engine.map(LEAF)[0].getSubjectX500Principal().getName()).contains("087f5fdc-98d7-40c0-64d3-fd95af83198d");
+    }
+
+    @Test
+    public void untrustedChain() throws CertificateException, IOException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().trustStore(trustStore(OTHER_CA)).build();
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> engine.map(LEAF))
+                .isInstanceOf(ClientCertificateException.class)
+                .hasFieldOrPropertyWithValue("reason", FailureReason.UNTRUSTED);
+        }
+
+        assertThat(engine.getCachedCertificates(LEAF)).isNull();
+    }
+
+    private static X509Certificate certificate(String encoded) throws CertificateException {
+        return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(new ByteArrayInputStream(Base64.getDecoder().decode(encoded)));
+    }
+
+    private static String pem(String encoded) {
+        return String.format("-----BEGIN CERTIFICATE-----\n%s\n-----END CERTIFICATE-----\n", encoded);
+    }
+
+    private Path trustStore(String... encoded) throws IOException {
+        StringBuilder bundle = new StringBuilder();
+        for (String certificate : encoded) {
+            bundle.append(pem(certificate));
+        }
+
+        return Files.write(this.directory.resolve("ca.pem"), bundle.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public final class CidrTrieTest {
+
+    private final CidrTrie trie = new CidrTrie(Arrays.asList("10.0.0.0/8", "192.168.1.7", "2001:db8::/32", "::1", "fe80::/10"));
+
+    @Test
+    public void bytes() throws UnknownHostException {
+        assertThat(this.trie.contains(InetAddress.getByName("10.1.2.3").getAddress())).isTrue();
+        assertThat(this.trie.contains(InetAddress.getByName("11.1.2.3").getAddress())).isFalse();
+        assertThat(this.trie.contains(InetAddress.getByName("2001:db8::1").getAddress())).isTrue();
+        assertThat(this.trie.contains(InetAddress.getByName("2001:db9::1").getAddress())).isFalse();
+        assertThat(this.trie.contains((byte[]) null)).isFalse();
+    }
+
+    @Test
+    public void everyAddress() {
+        CidrTrie trie = new CidrTrie(Arrays.asList("0.0.0.0/0", "::/0"));
+
+        assertThat(trie.contains("203.0.113.1")).isTrue();
+        assertThat(trie.contains("2001:db8::1")).isTrue();
+    }
+
+    @Test
+    public void invalidAddress() {
+        assertThatThrownBy(() -> new CidrTrie(Collections.singletonList("10.0.0/8")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("10.0.0/8");
+        assertThatThrownBy(() -> new CidrTrie(Collections.singletonList("example.com")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void invalidPrefixLength() {
+        assertThatThrownBy(() -> new CidrTrie(Collections.singletonList("10.0.0.0/33")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("10.0.0.0/33");
+        assertThatThrownBy(() -> new CidrTrie(Collections.singletonList("::/129")))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CidrTrie(Collections.singletonList("10.0.0.0/")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void ipv4() {
+        assertThat(this.trie.contains("10.0.0.0")).isTrue();
+        assertThat(this.trie.contains("10.255.255.255")).isTrue();
+        assertThat(this.trie.contains("11.0.0.0")).isFalse();
+        assertThat(this.trie.contains("192.168.1.7")).isTrue();
+        assertThat(this.trie.contains("192.168.1.8")).isFalse();
+    }
+
+    @Test
+    public void ipv4Mapped() {
+        CidrTrie trie = new CidrTrie(Arrays.asList("10.0.0.0/8", "::ffff:100.64.0.0/106"));
+
+        assertThat(trie.contains("::ffff:10.1.2.3")).isTrue();
+        assertThat(trie.contains("::ffff:a01:203")).isTrue();
+        assertThat(trie.contains("100.64.1.1")).isTrue();
+        assertThat(trie.contains("100.128.0.0")).isFalse();
+    }
+
+    @Test
+    public void ipv6() {
+        assertThat(this.trie.contains("2001:db8::")).isTrue();
+        assertThat(this.trie.contains("2001:DB8:ffff::1")).isTrue();
+        assertThat(this.trie.contains("2001:db9::")).isFalse();
+        assertThat(this.trie.contains("::1")).isTrue();
+        assertThat(this.trie.contains("0:0:0:0:0:0:0:1")).isTrue();
+        assertThat(this.trie.contains("[::1]")).isTrue();
+        assertThat(this.trie.contains("fe80::1%eth0")).isTrue();
+        assertThat(this.trie.contains("::2")).isFalse();
+    }
+
+    @Test
+    public void malformedAddress() {
+        for (String address : new String[]{ "", "garbage", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1:2:3:4:5:6:7:8:9", "1::2::3", ":::1", "1:", "1:2:3:4:5:6:7::8" }) {
+            assertThat(this.trie.contains(address)).isFalse();
+        }
+
+        assertThat(this.trie.contains((CharSequence) null)).isFalse();
+    }
+
+    @Test
+    public void overlappingRanges() {
+        CidrTrie trie = new CidrTrie(Arrays.asList("10.1.0.0/16", "10.0.0.0/8", "10.1.2.0/24"));
+
+        assertThat(trie.contains("10.1.2.3")).isTrue();
+        assertThat(trie.contains("10.2.0.0")).isTrue();
+    }
+
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public final class ClientCertificateEngineTest {
+
+    static final String CERTIFICATE_1 = "" +
+        "MIIDLTCCAhWgAwIBAgIkMDg3ZjVmZGMtOThkNy00MGMwLTY0ZDMtZmQ5NWFmODMx" +
+        "OThkMA0GCSqGSIb3DQEBCwUAMBoxGDAWBgNVBAMMD2NyZWRodWJDbGllbnRDQTAe" +
+        "Fw0xNzA1MDIwMDQ5MzFaFw0xNzA1MDMwMDQ5MzFaMGIxMTAvBgNVBAsTKGFwcDoy" +
+        "MzI4MmZkMS0zNWI0LTQ1ZGQtYTYwMi04Zjc2ZjRhNjBkMTExLTArBgNVBAMTJDA4" +
+        "N2Y1ZmRjLTk4ZDctNDBjMC02NGQzLWZkOTVhZjgzMTk4ZDCCASIwDQYJKoZIhvcN" +
+        "AQEBBQADggEPADCCAQoCggEBAPhcSn56pIVWI0RpwrkC3WcvumLw+3i/oj3YBbEx" +
+        "AUAFJMFl/yt1zpAghLvYOOiiUS/W04SKp8Z9FHlmNabJOzV40RIciSbYCW0tBeFG" +
+        "KNkgolTGamvRLZkkHUJdywEQkvnMG7+2XczDBoCZ7fdBepg6gieSqGhQwl/sO7x/" +
+        "TouvQnujKwJLiXOKQq00TkT+MVEzOZyOMlqFh9r2XjUGuh1HnRM0IAj6buR5663t" +
+        "4lAQqOluTAVNCKWSrAMIKb0G4QPTQ4pKRTeMEnTijFErtKlpzc64HYrBpufj1K/q" +
+        "TxYIy3EgeT3UVSclSub14M4/r/mOmWotYP81BR1Ko7pxV28CAwEAAaMTMBEwDwYD" +
+        "VR0RBAgwBocECv4AAjANBgkqhkiG9w0BAQsFAAOCAQEAuG8A33+Un2rvXA+qAf40" +
+        "gBponN2mjx0drasw/MqBnclUL1MYvOepqcGxxNB/1Ok/bKKDMr03ugVaxzAdoknA" +
+        "NwIyY/ghL6xHs/JrmuSGDs9BeNF0y8TOpQmmjh1EDFtR9YFuTRP1OZ6XBf5fbd80" +
+        "Q684k/Wu8ELywZJd53FKcTPJRQ/Yjn4QFJORtcNFlvMFWTmJLLiMDbI8JBcqMLZH" +
+        "sgdyBtV7kJdZU3nszgFEPspYzFfxQZmq6V+pJb+dmG2jYWrX/R21J9x1dJHBCoPp" +
+        "XcqQm8pYsDxi+HTGS6an78sHqrvU5uQJq2MW8o6iBJR80bFgWSl7GTqK3Xz5iTxU" +
+        "Ew==";
+
+    static final String CERTIFICATE_2 = "" +
+        "MIIC1TCCAb2gAwIBAgIUL3dmX9jNj2XqQaXv9noNfU84VoowDQYJKoZIhvcNAQEL" +
+        "BQAwGjEYMBYGA1UEAwwPY3JlZGh1YkNsaWVudENBMB4XDTE3MDMzMDE5MTg0NVoX" +
+        "DTE4MDMzMDE5MTg0NVowGjEYMBYGA1UEAwwPY3JlZGh1YkNsaWVudENBMIIBIjAN" +
+        "BgkqhkiG9w0BAQEFAAOCAQ8AMIIBCgKCAQEAz1bJ1NkS+uDl3xMo8fvPFRsXdZUW" +
+        "Un4N9nOfX/bfTWHrDKgW6+qrkkDBW4NLw0IHfgV99HwAygmiMC5La2HJg3JzcRMn" +
+        "dq9MosrNjv5wVtkQAReLVCcZ+EMb4f+0tlbespsfMQpKYfksovXHTSv+zbvbE+pX" +
+        "ObSUYpbZ09LtvbVL9s6hO5E9P9uXuV+ZSOZTISqtEIF6sXOKjx6WTCanG6jqf4+4" +
+        "Lyasffen18NcMld6f7cfEgExUO7OVN86J28+LcILICAOB2m8ug4KnDkigaJp25ou" +
+        "bPl/YnJtMh75buBjiOLI5p9j/n2mliUTKC5fJ54fb6MoMKXgXPAC7bcz5wIDAQAB" +
+        "oxMwETAPBgNVHRMBAf8EBTADAQH/MA0GCSqGSIb3DQEBCwUAA4IBAQBXc7cDaA8D" +
+        "Iuoxnt5SVAk9R664OiMxOiQJ7oavdcU1S2hS22MOzAM1gMAwur1C8fmjcHthma4a" +
+        "IFzzyvWlT3cfKmr+e1CVU0fOr1f4kFFval4kSa9uFbqaqQlj6dovoO34W9eadTyN" +
+        "mACol2RdG0tjYWzbUaHdA21PdcezhiVw+PnXbzfKSnjWoxv0id1JTTPnVqfghTjG" +
+        "pEqerOIo3+YRhkUsUEhJ9SFa58dtlKRPtKQjSuMTeBgQiU7WCpueFfPqRM1Ab7bP" +
+        "OeiChAJVyknz/Mu1KmQxoZ43JfCyUIdtT5oE7CWIJt3qVwJYLgykuYV8vXEnIALB" +
+        "p/ob7SaWTJJO";
+
+    static final String NGINX_ESCAPED_CERT = "" +
+        "%2D%2D%2D%2D%2DBEGIN%20CERTIFICATE%2D%2D%2D%2D%2D%0D%0AMIIDLTCCA" +
+        "hWgAwIBAgIkMDg3ZjVmZGMtOThkNy00MGMwLTY0ZDMtZmQ5NWFmODMx%0D%0AOTh" +
+        "kMA0GCSqGSIb3DQEBCwUAMBoxGDAWBgNVBAMMD2NyZWRodWJDbGllbnRDQTAe%0D" +
+        "%0AFw0xNzA1MDIwMDQ5MzFaFw0xNzA1MDMwMDQ5MzFaMGIxMTAvBgNVBAsTKGFwc" +
+        "Doy%0D%0AMzI4MmZkMS0zNWI0LTQ1ZGQtYTYwMi04Zjc2ZjRhNjBkMTExLTArBgN" +
+        "VBAMTJDA4%0D%0AN2Y1ZmRjLTk4ZDctNDBjMC02NGQzLWZkOTVhZjgzMTk4ZDCCA" +
+        "SIwDQYJKoZIhvcN%0D%0AAQEBBQADggEPADCCAQoCggEBAPhcSn56pIVWI0Rpwrk" +
+        "C3WcvumLw%2B3i%2Foj3YBbEx%0D%0AAUAFJMFl%2Fyt1zpAghLvYOOiiUS%2FW0" +
+        "4SKp8Z9FHlmNabJOzV40RIciSbYCW0tBeFG%0D%0AKNkgolTGamvRLZkkHUJdywE" +
+        "QkvnMG7%2B2XczDBoCZ7fdBepg6gieSqGhQwl%2FsO7x%2F%0D%0ATouvQnujKwJ" +
+        "LiXOKQq00TkT%2BMVEzOZyOMlqFh9r2XjUGuh1HnRM0IAj6buR5663t%0D%0A4lA" +
+        "QqOluTAVNCKWSrAMIKb0G4QPTQ4pKRTeMEnTijFErtKlpzc64HYrBpufj1K%2Fq%" +
+        "0D%0ATxYIy3EgeT3UVSclSub14M4%2Fr%2FmOmWotYP81BR1Ko7pxV28CAwEAAaM" +
+        "TMBEwDwYD%0D%0AVR0RBAgwBocECv4AAjANBgkqhkiG9w0BAQsFAAOCAQEAuG8A3" +
+        "3%2BUn2rvXA%2BqAf40%0D%0AgBponN2mjx0drasw%2FMqBnclUL1MYvOepqcGxx" +
+        "NB%2F1Ok%2FbKKDMr03ugVaxzAdoknA%0D%0ANwIyY%2FghL6xHs%2FJrmuSGDs9" +
+        "BeNF0y8TOpQmmjh1EDFtR9YFuTRP1OZ6XBf5fbd80%0D%0AQ684k%2FWu8ELywZJ" +
+        "d53FKcTPJRQ%2FYjn4QFJORtcNFlvMFWTmJLLiMDbI8JBcqMLZH%0D%0AsgdyBtV" +
+        "7kJdZU3nszgFEPspYzFfxQZmq6V%2BpJb%2BdmG2jYWrX%2FR21J9x1dJHBCoPp%" +
+        "0D%0AXcqQm8pYsDxi%2BHTGS6an78sHqrvU5uQJq2MW8o6iBJR80bFgWSl7GTqK3" +
+        "Xz5iTxU%0D%0AEw%3D%3D%0D%0A%2D%2D%2D%2D%2DEND%20CERTIFICATE%2D%2" +
+        "D%2D%2D%2D%0D%0A";
+
+    private final ClientCertificateEngine engine;
+
+    public ClientCertificateEngineTest() throws CertificateException {
+        this.engine = ClientCertificateEngine.builder().build();
+    }
+
+    @Test
+    public void byteBuffer() throws CertificateException {
+        ByteBuffer buffer = ByteBuffer.wrap(String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2).getBytes(StandardCharsets.ISO_8859_1));
+
+        assertThat(this.engine.map(buffer)).hasSize(2);
+        assertThat(this.engine.map(String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2))).hasSize(2);
+        assertThat(buffer.position()).isZero();
+        assertThat(this.engine.getChainCache().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void cachedCertificate() throws CertificateException {
+        this.engine.map(CERTIFICATE_1);
+
+        assertThat(this.engine.map(String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2))).hasSize(2);
+        assertThat(this.engine.getCertificateCache().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void cachedCertificates() throws CertificateException {
+        assertThat(this.engine.getCachedCertificates(CERTIFICATE_1)).isNull();
+
+        X509Certificate[] first = this.engine.map(CERTIFICATE_1);
+
+        assertThat(this.engine.getCachedCertificates(CERTIFICATE_1)).isNotSameAs(first).containsExactly(first);
+    }
+
+    @Test
+    public void cachedHeader() throws CertificateException {
+        X509Certificate[] first = this.engine.map(String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2));
+        X509Certificate[] second = this.engine.map(String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2));
+
+        assertThat(second).isNotSameAs(first).containsExactly(first);
+        assertThat(this.engine.getChainCache().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void connection() throws CertificateException {
+        X509Certificate[] first = this.engine.map(String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2), "test-connection");
+        X509Certificate[] second = this.engine.map(String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2), "test-connection");
+
+        assertThat(second).isNotSameAs(first).containsExactly(first);
+        assertThat(this.engine.getChainCache().hitCount()).isZero();
+        assertThat(this.engine.getChainCache().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void connectionChangedHeader() throws CertificateException {
+        this.engine.map(CERTIFICATE_1, "test-connection");
+        X509Certificate[] second = this.engine.map(CERTIFICATE_2, "test-connection");
+
+        assertThat(second).containsExactly(this.engine.map(CERTIFICATE_2));
+        assertThat(this.engine.getChainCache().missCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void connectionUnknown() throws CertificateException {
+        this.engine.map(CERTIFICATE_1, "");
+        this.engine.map(CERTIFICATE_1, null);
+
+        assertThat(this.engine.getChainCache().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void defaultEngine() throws CertificateException {
+        assertThat(ClientCertificateEngine.getDefault()).isSameAs(ClientCertificateEngine.getDefault());
+    }
+
+    @Test
+    public void disabledCache() throws CertificateException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().cacheMaximumSize(0).build();
+
+        assertThat(engine.map(CERTIFICATE_1)).hasSize(1);
+        assertThat(engine.getChainCache().size()).isZero();
+        assertThat(engine.getCertificateCache().size()).isZero();
+    }
+
+    @Test
+    public void emptyHeader() throws CertificateException {
+        assertThat(this.engine.map("")).isEmpty();
+        assertThat(this.engine.map(" , ")).isEmpty();
+    }
+
+    @Test
+    public void instanceIdentity() throws CertificateException {
+        X509Certificate[] certificates = this.engine.map(String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2));
+
+        assertThat(this.engine.getInstanceIdentity(certificates[0])).isSameAs(this.engine.getInstanceIdentity(this.engine.map(CERTIFICATE_1)[0]));
+        assertThat(this.engine.getInstanceIdentity(certificates[1])).isNull();
+    }
+
+    @Test
+    public void invalidHeader() {
+        assertThatExceptionOfType(CertificateException.class).isThrownBy(() -> this.engine.map("Invalid Header Value"));
+        assertThatExceptionOfType(CertificateException.class).isThrownBy(() -> this.engine.map(String.format("%s,Invalid Header Value", CERTIFICATE_1)));
+    }
+
+    @Test
+    public void listener() throws CertificateException {
+        List<String> events = new ArrayList<>();
+        ClientCertificateEngine engine = ClientCertificateEngine.builder()
+            .listener(new MappingListener() {
+
+                @Override
+                public void onAbsent() {
+                    events.add("absent");
+                }
+
+                @Override
+                public void onDecoded(CertificateEncoding encoding) {
+                    events.add(encoding.toString());
+                }
+
+                @Override
+                public void onFailed(FailureReason reason, int headerSize, long duration) {
+                    events.add("failed " + reason);
+                }
+
+                @Override
+                public void onMapped(int headerSize, int chainLength, long duration) {
+                    events.add("mapped " + chainLength);
+                }
+
+            })
+            .build();
+
+        engine.map((CharSequence) null);
+        engine.map(CERTIFICATE_1);
+        engine.getCachedCertificates(CERTIFICATE_1);
+        assertThatExceptionOfType(CertificateException.class).isThrownBy(() -> engine.map("Invalid Header Value"));
+
+        assertThat(events).containsExactly("absent", "BASE64", "mapped 1", "mapped 1", "failed UNPARSEABLE");
+    }
+
+    @Test
+    public void negativeCache() {
+        assertThatThrownBy(() -> this.engine.map("Invalid Header Value"))
+            .hasFieldOrPropertyWithValue("reason", FailureReason.UNPARSEABLE)
+            .hasCauseInstanceOf(CertificateException.class);
+        assertThatThrownBy(() -> this.engine.map("Invalid Header Value"))
+            .hasFieldOrPropertyWithValue("reason", FailureReason.UNPARSEABLE)
+            .hasMessageContaining("failed recently")
+            .hasNoCause();
+
+        assertThat(this.engine.getFailureCache().size()).isEqualTo(1);
+    }
+
+    @Test
+    public void negativeCacheDisabled() throws CertificateException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().negativeCacheMaximumSize(0).build();
+
+        assertThatThrownBy(() -> engine.map("Invalid Header Value")).hasCauseInstanceOf(CertificateException.class);
+        assertThatThrownBy(() -> engine.map("Invalid Header Value")).hasCauseInstanceOf(CertificateException.class);
+        assertThat(engine.getFailureCache().size()).isZero();
+    }
+
+    @Test
+    public void nginxHeader() throws CertificateException {
+        assertThat(this.engine.map(NGINX_ESCAPED_CERT)).hasSize(1);
+    }
+
+    @Test
+    public void offHeapCache() throws CertificateException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().cacheMaximumSize(0).cacheOffHeapCapacity(1 << 20).build();
+
+        X509Certificate[] first = engine.map(CERTIFICATE_1);
+        X509Certificate[] second = engine.map(String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2));
+
+        assertThat(second[0]).isEqualTo(first[0]);
+        assertThat(engine.getDerCache().hitCount()).isEqualTo(1);
+        assertThat(engine.getDerCache().missCount()).isEqualTo(2);
+        assertThat(engine.getDerCache().size()).isEqualTo(2);
+    }
+
+    @Test
+    public void offHeapCacheDisabled() throws CertificateException {
+        assertThat(this.engine.map(CERTIFICATE_1)).hasSize(1);
+        assertThat(this.engine.getDerCache().capacity()).isZero();
+        assertThat(this.engine.getDerCache().size()).isZero();
+    }
+
+    @Test
+    public void pemHeader() throws CertificateException {
+        assertThat(this.engine.map(String.format("-----BEGIN CERTIFICATE----- %s -----END CERTIFICATE-----", CERTIFICATE_1))).hasSize(1);
+    }
+
+    @Test
+    public void stringBuilder() throws CertificateException {
+        assertThat(this.engine.map(new StringBuilder(CERTIFICATE_1).append(", ").append(CERTIFICATE_2))).hasSize(2);
+    }
+
+    @Test
+    public void structuredHeader() throws CertificateException {
+        String chain = String.format("-----BEGIN CERTIFICATE-----\n%s\n-----END CERTIFICATE-----\n-----BEGIN CERTIFICATE-----\n%s\n-----END CERTIFICATE-----\n",
+            CERTIFICATE_1, CERTIFICATE_2);
+
+        assertThat(this.engine.map(String.format("By=spiffe://cluster.local/ns/default/sa/default;Subject=\"CN=a,OU=b;c\";Cert=\"%s\";Chain=\"%s\"",
+            NGINX_ESCAPED_CERT, chain)))
+            .containsExactly(this.engine.map(String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2)));
+        assertThat(this.engine.map(String.format("By=spiffe://a;URI=spiffe://b,By=spiffe://c;Cert=\"%s\"", NGINX_ESCAPED_CERT))).hasSize(1);
+        assertThat(this.engine.map("By=spiffe://a;URI=spiffe://b")).isEmpty();
+    }
+
+    @Test
+    public void structuredHeaderHash() throws CertificateException {
+        X509Certificate[] first = this.engine.map(String.format("By=spiffe://a;Hash=0123abcd;Cert=\"%s\"", NGINX_ESCAPED_CERT));
+        long misses = this.engine.getCertificateCache().missCount();
+
+        assertThat(this.engine.map(String.format("By=spiffe://b;Hash=0123abcd;Cert=\"%s\"", NGINX_ESCAPED_CERT))).containsExactly(first);
+        assertThat(this.engine.getHashCache().hitCount()).isEqualTo(1);
+        assertThat(this.engine.getCertificateCache().missCount()).isEqualTo(misses);
+    }
+
+    @Test
+    public void structuredHeaderTooLongChain() throws CertificateException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().maximumChainLength(1).build();
+
+        assertThatThrownBy(() -> engine.map(String.format("Chain=\"-----BEGIN CERTIFICATE----- %s -----END CERTIFICATE----- -----BEGIN CERTIFICATE----- %s " +
+            "-----END CERTIFICATE-----\"", CERTIFICATE_1, CERTIFICATE_2)))
+            .hasFieldOrPropertyWithValue("reason", FailureReason.TOO_LARGE);
+        assertThat(engine.getCertificateCache().size()).isZero();
+    }
+
+    @Test
+    public void tooLargeCertificate() throws CertificateException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().maximumCertificateSize(CERTIFICATE_1.length() - 1).build();
+
+        assertThatThrownBy(() -> engine.map(String.format("%s,%s", CERTIFICATE_2, CERTIFICATE_1)))
+            .hasFieldOrPropertyWithValue("reason", FailureReason.TOO_LARGE)
+            .hasMessageContaining("certificate of");
+        assertThat(engine.getCertificateCache().size()).isZero();
+        assertThat(engine.map(CERTIFICATE_2)).hasSize(1);
+    }
+
+    @Test
+    public void tooLargeHeader() throws CertificateException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().maximumHeaderSize(CERTIFICATE_1.length()).build();
+
+        assertThat(engine.map(CERTIFICATE_1)).hasSize(1);
+        assertThatThrownBy(() -> engine.map(String.format("%s ", CERTIFICATE_1)))
+            .hasFieldOrPropertyWithValue("reason", FailureReason.TOO_LARGE);
+        assertThat(engine.getCachedCertificates(String.format("%s ", CERTIFICATE_1))).isNull();
+    }
+
+    @Test
+    public void tooLongChain() throws CertificateException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().maximumChainLength(1).build();
+
+        assertThatThrownBy(() -> engine.map(String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2)))
+            .hasFieldOrPropertyWithValue("reason", FailureReason.TOO_LARGE)
+            .hasMessageContaining("maximum of 1 certificates");
+        assertThat(engine.getCertificateCache().size()).isZero();
+    }
+
+    @Test
+    public void trustedProxies() throws CertificateException, UnknownHostException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().trustedProxies(Arrays.asList("10.0.0.0/8", "2001:db8::/32")).build();
+
+        assertThat(engine.isTrustedProxy("10.1.2.3")).isTrue();
+        assertThat(engine.isTrustedProxy("192.168.1.1")).isFalse();
+        assertThat(engine.isTrustedProxy(InetAddress.getByName("2001:db8::1"))).isTrue();
+        assertThat(engine.isTrustedProxy((CharSequence) null)).isFalse();
+        assertThat(engine.isTrustedProxy((InetAddress) null)).isFalse();
+    }
+
+    @Test
+    public void trustedProxiesNotConfigured() {
+        assertThat(this.engine.isTrustedProxy("192.168.1.1")).isTrue();
+        assertThat(this.engine.isTrustedProxy((CharSequence) null)).isTrue();
+    }
+
+    @Test
+    public void undecodableHeader() {
+        assertThatThrownBy(() -> this.engine.map("test%zzvalue"))
+            .isInstanceOf(ClientCertificateException.class)
+            .hasFieldOrPropertyWithValue("reason", FailureReason.UNDECODABLE);
+    }
+
+    @Test
+    public void warmUp() throws InterruptedException {
+        this.engine.warmUp(10).join();
+
+        assertThat(this.engine.getCertificateCache().size()).isZero();
+        assertThat(this.engine.getChainCache().size()).isZero();
+    }
+
+    @Test
+    public void warmUpSamples() throws CertificateException {
+        for (String sample : WarmUp.SAMPLES) {
+            assertThat(this.engine.map(sample)).isNotEmpty();
+        }
+    }
+
+}
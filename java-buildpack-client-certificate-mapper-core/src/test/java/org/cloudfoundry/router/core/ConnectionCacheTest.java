@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ConnectionCacheTest {
+
+    private final X509Certificate[] chain = new X509Certificate[1];
+
+    @Test
+    public void bounded() {
+        ConnectionCache cache = new ConnectionCache(16, Duration.ofHours(1));
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(String.valueOf(i), "test-header", this.chain);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(16);
+    }
+
+    @Test
+    public void changedHeader() {
+        ConnectionCache cache = new ConnectionCache(16, Duration.ofHours(1));
+        cache.put("test-connection", "test-header", this.chain);
+
+        assertThat(cache.get("test-connection", "test-heades")).isNull();
+    }
+
+    @Test
+    public void disabled() {
+        ConnectionCache cache = new ConnectionCache(0, Duration.ofHours(1));
+        cache.put("test-connection", "test-header", this.chain);
+
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(cache.get("test-connection", "test-header")).isNull();
+    }
+
+    @Test
+    public void expired() {
+        ConnectionCache cache = new ConnectionCache(16, Duration.ZERO);
+        cache.put("test-connection", "test-header", this.chain);
+
+        assertThat(cache.get("test-connection", "test-header")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void hit() {
+        ConnectionCache cache = new ConnectionCache(16, Duration.ofHours(1));
+        cache.put("test-connection", "test-header", this.chain);
+
+        assertThat(cache.get("test-connection", new StringBuilder("test-header"))).isSameAs(this.chain);
+    }
+
+    @Test
+    public void otherConnection() {
+        ConnectionCache cache = new ConnectionCache(1, Duration.ofHours(1));
+        cache.put("test-connection", "test-header", this.chain);
+
+        assertThat(cache.get("other-connection", "test-header")).isNull();
+    }
+
+    @Test
+    public void replaced() {
+        ConnectionCache cache = new ConnectionCache(1, Duration.ofHours(1));
+        cache.put("test-connection", "test-header", this.chain);
+        cache.put("other-connection", "test-header", new X509Certificate[1]);
+
+        assertThat(cache.get("test-connection", "test-header")).isNull();
+        assertThat(cache.get("other-connection", "test-header")).isNotNull();
+    }
+
+}
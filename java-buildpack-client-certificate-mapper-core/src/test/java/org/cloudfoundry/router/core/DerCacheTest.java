@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class DerCacheTest {
+
+    @Test
+    public void clear() {
+        DerCache cache = new DerCache(1 << 16, Duration.ofHours(1));
+        cache.put("test-key", 0, 8, der("test-der"));
+
+        cache.clear();
+
+        assertThat(cache.get("test-key", 0, 8, CertificateBuffer.acquire())).isFalse();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void disabled() {
+        DerCache cache = new DerCache(0, Duration.ofHours(1));
+        cache.put("test-key", 0, 8, der("test-der"));
+
+        assertThat(cache.get("test-key", 0, 8, CertificateBuffer.acquire())).isFalse();
+        assertThat(cache.missCount()).isZero();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void evicted() {
+        DerCache cache = new DerCache(1024, Duration.ofHours(1));
+        String der = new String(new char[300]).replace('\0', 'd');
+
+        for (int i = 0; i < 4; i++) {
+            cache.put(String.format("test-key-%d", i), 0, 10, der(der));
+        }
+
+        CertificateBuffer buffer = CertificateBuffer.acquire();
+        assertThat(cache.get("test-key-0", 0, 10, buffer)).isFalse();
+        assertThat(cache.get("test-key-3", 0, 10, buffer)).isTrue();
+        assertThat(read(buffer)).isEqualTo(der);
+        assertThat(cache.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void expired() {
+        DerCache cache = new DerCache(1 << 16, Duration.ZERO);
+        cache.put("test-key", 0, 8, der("test-der"));
+
+        assertThat(cache.get("test-key", 0, 8, CertificateBuffer.acquire())).isFalse();
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void hit() {
+        DerCache cache = new DerCache(1 << 16, Duration.ofHours(1));
+        cache.put("test-key", 0, 8, der("test-der"));
+
+        CertificateBuffer buffer = CertificateBuffer.acquire();
+        assertThat(cache.get("test-key", 0, 8, buffer)).isTrue();
+        assertThat(read(buffer)).isEqualTo("test-der");
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isZero();
+    }
+
+    @Test
+    public void miss() {
+        DerCache cache = new DerCache(1 << 16, Duration.ofHours(1));
+        cache.put("test-key", 0, 8, der("test-der"));
+
+        assertThat(cache.get("test-kez", 0, 8, CertificateBuffer.acquire())).isFalse();
+        assertThat(cache.hitCount()).isZero();
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void nonLatin1Key() {
+        DerCache cache = new DerCache(1 << 16, Duration.ofHours(1));
+        cache.put("test-ke\u0100", 0, 8, der("test-der"));
+
+        assertThat(cache.get("test-ke\u0100", 0, 8, CertificateBuffer.acquire())).isFalse();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void range() {
+        DerCache cache = new DerCache(1 << 16, Duration.ofHours(1));
+        cache.put(new StringBuilder("prefix,test-key,suffix"), 7, 15, der("test-der"));
+
+        CertificateBuffer buffer = CertificateBuffer.acquire();
+        assertThat(cache.get("test-key", 0, 8, buffer)).isTrue();
+        assertThat(read(buffer)).isEqualTo("test-der");
+    }
+
+    @Test
+    public void tooLarge() {
+        DerCache cache = new DerCache(1024, Duration.ofHours(1));
+        cache.put("test-key", 0, 8, der(new String(new char[1024])));
+
+        assertThat(cache.size()).isZero();
+    }
+
+    private static CertificateBuffer der(String value) {
+        CertificateBuffer buffer = CertificateBuffer.acquire();
+        buffer.clear(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            buffer.write(value.charAt(i));
+        }
+
+        return buffer;
+    }
+
+    private static String read(CertificateBuffer buffer) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int b = buffer.read(); b != -1; b = buffer.read()) {
+            sb.append((char) b);
+        }
+
+        return sb.toString();
+    }
+
+}
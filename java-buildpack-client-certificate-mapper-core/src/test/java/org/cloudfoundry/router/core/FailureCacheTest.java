@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class FailureCacheTest {
+
+    @Test
+    public void bounded() {
+        FailureCache cache = new FailureCache(16, Duration.ofHours(1));
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(FailureCache.fingerprint(String.valueOf(i)), FailureReason.UNPARSEABLE);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(16);
+    }
+
+    @Test
+    public void disabled() {
+        FailureCache cache = new FailureCache(0, Duration.ofHours(1));
+        cache.put(1, FailureReason.UNPARSEABLE);
+
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(cache.get(1)).isNull();
+    }
+
+    @Test
+    public void expired() {
+        FailureCache cache = new FailureCache(16, Duration.ZERO);
+        cache.put(1, FailureReason.UNPARSEABLE);
+
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void fingerprint() {
+        assertThat(FailureCache.fingerprint("test-value")).isEqualTo(FailureCache.fingerprint(new StringBuilder("test-value")));
+        assertThat(FailureCache.fingerprint("test-value")).isNotEqualTo(FailureCache.fingerprint("test-valuf"));
+    }
+
+    @Test
+    public void hit() {
+        FailureCache cache = new FailureCache(16, Duration.ofHours(1));
+        cache.put(1, FailureReason.UNDECODABLE);
+
+        assertThat(cache.get(1)).isEqualTo(FailureReason.UNDECODABLE);
+        assertThat(cache.get(2)).isNull();
+    }
+
+}
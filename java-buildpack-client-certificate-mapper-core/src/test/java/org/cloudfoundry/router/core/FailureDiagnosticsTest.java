@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class FailureDiagnosticsTest {
+
+    private final Logger logger = Logger.getLogger(ClientCertificateEngine.class.getName());
+
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+
+    private final Handler handler = new Handler() {
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            // The logger is shared with the rest of the engine, such as trust store reloads left running by other tests
+            if (FailureDiagnostics.class.getName().equals(record.getSourceClassName())) {
+                FailureDiagnosticsTest.this.messages.add(record.getMessage());
+            }
+        }
+
+    };
+
+    public FailureDiagnosticsTest() {
+        this.logger.addHandler(this.handler);
+    }
+
+    @Test
+    public void aggregated() {
+        FailureDiagnostics diagnostics = new FailureDiagnostics(Duration.ofHours(1));
+
+        for (int i = 0; i < 100; i++) {
+            diagnostics.failed(new ClientCertificateException(FailureReason.UNPARSEABLE, "test-message"), i > 0);
+        }
+
+        assertThat(this.messages).hasSize(1);
+        assertThat(this.messages.get(0)).contains("1 failure(s)", "UNPARSEABLE=1", "0 short-circuited", "test-message");
+    }
+
+    @AfterEach
+    public void removeHandler() {
+        this.logger.removeHandler(this.handler);
+    }
+
+    @Test
+    public void reported() {
+        FailureDiagnostics diagnostics = new FailureDiagnostics(Duration.ZERO);
+
+        diagnostics.failed(new ClientCertificateException(FailureReason.UNDECODABLE, "test-message-1"), false);
+        diagnostics.failed(new ClientCertificateException(FailureReason.UNPARSEABLE, "test-message-2"), true);
+
+        assertThat(this.messages).hasSize(2);
+        assertThat(this.messages.get(1)).contains("1 failure(s)", "UNPARSEABLE=1", "1 short-circuited", "test-message-2");
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class HeaderTokenizerTest {
+
+    @Test
+    public void count() {
+        assertThat(HeaderTokenizer.count("alpha, bravo,,charlie")).isEqualTo(3);
+    }
+
+    @Test
+    public void empty() {
+        assertThat(tokens("")).isEmpty();
+        assertThat(tokens(" , ,")).isEmpty();
+    }
+
+    @Test
+    public void multiple() {
+        assertThat(tokens("alpha,bravo,charlie")).containsExactly("alpha", "bravo", "charlie");
+    }
+
+    @Test
+    public void single() {
+        assertThat(tokens("alpha")).containsExactly("alpha");
+    }
+
+    @Test
+    public void whitespace() {
+        assertThat(tokens(" alpha ,\tbravo\t, ,charlie bravo ")).containsExactly("alpha", "bravo", "charlie bravo");
+    }
+
+    private static List<String> tokens(String value) {
+        List<String> tokens = new ArrayList<>();
+
+        for (HeaderTokenizer tokenizer = new HeaderTokenizer(value); tokenizer.next(); ) {
+            tokens.add(value.substring(tokenizer.start(), tokenizer.end()));
+        }
+
+        return tokens;
+    }
+
+}
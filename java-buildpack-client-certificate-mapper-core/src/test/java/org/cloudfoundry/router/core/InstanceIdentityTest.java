@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+
+import javax.security.auth.x500.X500Principal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class InstanceIdentityTest {
+
+    private static final UUID APP = UUID.fromString("23282fd1-35b4-45dd-a602-8f76f4a60d11");
+
+    private static final UUID ORGANIZATION = UUID.fromString("4c9f9a4e-9c3a-4b0e-9a6e-0e2f8d7a1b5c");
+
+    private static final UUID SPACE = UUID.fromString("a1b2c3d4-e5f6-4789-8abc-def012345678");
+
+    @Test
+    public void appOnly() {
+        InstanceIdentity identity = InstanceIdentity.of(new X500Principal(String.format("OU=app:%s, CN=087f5fdc-98d7-40c0-64d3-fd95af83198d", APP)));
+
+        assertThat(identity.getAppGuid()).isEqualTo(APP);
+        assertThat(identity.getInstanceId()).isEqualTo("087f5fdc-98d7-40c0-64d3-fd95af83198d");
+        assertThat(identity.getOrganizationGuid()).isNull();
+        assertThat(identity.getSpaceGuid()).isNull();
+        assertThat(identity.isOrganization(ORGANIZATION)).isFalse();
+    }
+
+    @Test
+    public void fullIdentity() {
+        InstanceIdentity identity = InstanceIdentity.of(new X500Principal(String.format(
+            "OU=organization:%s, OU=space:%s, OU=app:%s, CN=087f5fdc-98d7-40c0-64d3-fd95af83198d", ORGANIZATION, SPACE, APP)));
+
+        assertThat(identity.isApp(APP)).isTrue();
+        assertThat(identity.isApp(SPACE)).isFalse();
+        assertThat(identity.isOrganization(ORGANIZATION)).isTrue();
+        assertThat(identity.isSpace(SPACE)).isTrue();
+        assertThat(identity.isSpace(null)).isFalse();
+        assertThat(identity.getSpaceGuid()).isEqualTo(SPACE);
+    }
+
+    @Test
+    public void invalidGuid() {
+        InstanceIdentity identity = InstanceIdentity.of(new X500Principal(String.format("OU=space:not-a-guid, OU=app:%s", APP)));
+
+        assertThat(identity.getAppGuid()).isEqualTo(APP);
+        assertThat(identity.getSpaceGuid()).isNull();
+    }
+
+    @Test
+    public void noIdentity() {
+        assertThat(InstanceIdentity.of(new X500Principal("CN=credhubClientCA"))).isSameAs(InstanceIdentity.NONE);
+        assertThat(InstanceIdentity.of(new X500Principal("OU=space:not-a-guid, CN=test"))).isSameAs(InstanceIdentity.NONE);
+    }
+
+    @Test
+    public void valueEquality() {
+        String name = String.format("OU=space:%s, OU=app:%s, CN=test", SPACE, APP);
+
+        assertThat(InstanceIdentity.of(new X500Principal(name))).isEqualTo(InstanceIdentity.of(new X500Principal(name)))
+            .hasSameHashCodeAs(InstanceIdentity.of(new X500Principal(name)))
+            .isNotEqualTo(InstanceIdentity.of(new X500Principal(String.format("OU=app:%s, CN=test", APP))));
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.cert.CertificateException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public final class MappingEventsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void cacheLookup() throws CertificateException, IOException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().build();
+
+        Recording recording = start("org.cloudfoundry.router.CacheLookup");
+        engine.map(ClientCertificateEngineTest.CERTIFICATE_1);
+        engine.map(ClientCertificateEngineTest.CERTIFICATE_1);
+        engine.map(ClientCertificateEngineTest.CERTIFICATE_1, "connection-1");
+        List<RecordedEvent> events = stop(recording, "org.cloudfoundry.router.CacheLookup");
+
+        assertThat(strings(events, "cache")).containsExactly("chain", "chain", "connection", "chain");
+        assertThat(strings(events, "outcome")).containsExactly("miss", "hit", "miss", "hit");
+        assertThat(events.get(1).getInt("chainLength")).isEqualTo(1);
+        assertThat(events.get(1).getInt("size")).isEqualTo(ClientCertificateEngineTest.CERTIFICATE_1.length());
+    }
+
+    @Test
+    public void decode() throws CertificateException, IOException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().build();
+
+        Recording recording = start("org.cloudfoundry.router.CertificateDecode");
+        engine.map(ClientCertificateEngineTest.NGINX_ESCAPED_CERT);
+        engine.map(ClientCertificateEngineTest.NGINX_ESCAPED_CERT);
+        List<RecordedEvent> events = stop(recording, "org.cloudfoundry.router.CertificateDecode");
+
+        assertThat(strings(events, "encoding")).containsExactly("URL_ENCODED_PEM");
+        assertThat(strings(events, "outcome")).containsExactly("decoded");
+        assertThat(events.get(0).getInt("size")).isEqualTo(ClientCertificateEngineTest.NGINX_ESCAPED_CERT.length());
+    }
+
+    @Test
+    public void disabledByDefault() throws CertificateException, IOException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().build();
+
+        Recording recording = new Recording();
+        recording.start();
+        engine.map(ClientCertificateEngineTest.CERTIFICATE_1);
+        List<RecordedEvent> events = stop(recording, "org.cloudfoundry.router.HeaderScan");
+
+        assertThat(events).isEmpty();
+        assertThat(EventType.getEventType(MappingEvents.ScanEvent.class).isEnabled()).isFalse();
+    }
+
+    @Test
+    public void failure() throws CertificateException, IOException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().build();
+
+        Recording recording = start("org.cloudfoundry.router.MappingFailure");
+        assertThatThrownBy(() -> engine.map("!!!")).isInstanceOf(ClientCertificateException.class);
+        assertThatThrownBy(() -> engine.map("!!!")).isInstanceOf(ClientCertificateException.class);
+        List<RecordedEvent> events = stop(recording, "org.cloudfoundry.router.MappingFailure");
+
+        assertThat(strings(events, "outcome")).containsExactly("UNPARSEABLE", "UNPARSEABLE");
+        assertThat(events.get(0).getBoolean("shortCircuited")).isFalse();
+        assertThat(events.get(1).getBoolean("shortCircuited")).isTrue();
+        assertThat(events.get(1).getInt("size")).isEqualTo(3);
+    }
+
+    @Test
+    public void parse() throws CertificateException, IOException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().build();
+
+        Recording recording = start("org.cloudfoundry.router.CertificateParse");
+        engine.map(String.format("%s,%s", ClientCertificateEngineTest.CERTIFICATE_1, ClientCertificateEngineTest.CERTIFICATE_2));
+        List<RecordedEvent> events = stop(recording, "org.cloudfoundry.router.CertificateParse");
+
+        assertThat(strings(events, "encoding")).containsExactly("BASE64", "BASE64");
+        assertThat(strings(events, "outcome")).containsExactly("parsed", "parsed");
+        assertThat(events.get(0).getInt("size")).isPositive().isLessThan(ClientCertificateEngineTest.CERTIFICATE_1.length());
+    }
+
+    @Test
+    public void scan() throws CertificateException, IOException {
+        ClientCertificateEngine engine = ClientCertificateEngine.builder().maximumChainLength(1).build();
+        String rawHeader = String.format("%s,%s", ClientCertificateEngineTest.CERTIFICATE_1, ClientCertificateEngineTest.CERTIFICATE_2);
+
+        Recording recording = start("org.cloudfoundry.router.HeaderScan");
+        engine.map(ClientCertificateEngineTest.CERTIFICATE_1);
+        assertThatThrownBy(() -> engine.map(rawHeader)).isInstanceOf(ClientCertificateException.class);
+        List<RecordedEvent> events = stop(recording, "org.cloudfoundry.router.HeaderScan");
+
+        assertThat(strings(events, "outcome")).containsExactly("admitted", "rejected");
+        assertThat(events.get(0).getInt("chainLength")).isEqualTo(1);
+        assertThat(events.get(1).getInt("chainLength")).isEqualTo(2);
+        assertThat(events.get(1).getInt("size")).isEqualTo(rawHeader.length());
+    }
+
+    private static Recording start(String name) {
+        Recording recording = new Recording();
+        recording.enable(name);
+        recording.start();
+        return recording;
+    }
+
+    private List<RecordedEvent> stop(Recording recording, String name) throws IOException {
+        Path file = this.directory.resolve("recording.jfr");
+
+        try {
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            recording.close();
+        }
+
+        return RecordingFile.readAllEvents(file).stream()
+            .filter(event -> event.getEventType().getName().equals(name))
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> strings(List<RecordedEvent> events, String field) {
+        return events.stream().map(event -> event.getString(field)).collect(Collectors.toList());
+    }
+
+}
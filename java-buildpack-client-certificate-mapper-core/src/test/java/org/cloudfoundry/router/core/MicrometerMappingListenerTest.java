@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class MicrometerMappingListenerTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final MicrometerMappingListener listener = new MicrometerMappingListener(this.registry);
+
+    @Test
+    public void absent() {
+        this.listener.onAbsent();
+
+        assertThat(this.registry.get("client.certificate.mapper.requests").tag("outcome", "none").counter().count()).isEqualTo(1);
+        assertThat(this.registry.get("client.certificate.mapper.duration").timer().count()).isZero();
+    }
+
+    @Test
+    public void decoded() {
+        this.listener.onDecoded(CertificateEncoding.BASE64);
+        this.listener.onDecoded(CertificateEncoding.PEM);
+        this.listener.onDecoded(CertificateEncoding.URL_ENCODED_PEM);
+
+        assertThat(this.registry.get("client.certificate.mapper.certificates").tag("encoding", "base64").counter().count()).isEqualTo(2);
+        assertThat(this.registry.get("client.certificate.mapper.certificates").tag("encoding", "url-encoded").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void failed() {
+        this.listener.onFailed(FailureReason.UNDECODABLE, 20, TimeUnit.MICROSECONDS.toNanos(5));
+
+        assertThat(this.registry.get("client.certificate.mapper.requests").tag("outcome", "failed").counter().count()).isEqualTo(1);
+        assertThat(this.registry.get("client.certificate.mapper.header.size").summary().totalAmount()).isEqualTo(20);
+        assertThat(this.registry.get("client.certificate.mapper.duration").timer().totalTime(TimeUnit.MICROSECONDS)).isEqualTo(5);
+        assertThat(this.registry.get("client.certificate.mapper.chain.length").summary().count()).isZero();
+    }
+
+    @Test
+    public void mapped() {
+        this.listener.onMapped(2048, 2, TimeUnit.MICROSECONDS.toNanos(10));
+
+        assertThat(this.registry.get("client.certificate.mapper.requests").tag("outcome", "parsed").counter().count()).isEqualTo(1);
+        assertThat(this.registry.get("client.certificate.mapper.chain.length").summary().totalAmount()).isEqualTo(2);
+        assertThat(this.registry.get("client.certificate.mapper.header.size").summary().totalAmount()).isEqualTo(2048);
+        assertThat(this.registry.get("client.certificate.mapper.duration").timer().totalTime(TimeUnit.MICROSECONDS)).isEqualTo(10);
+    }
+
+    @Test
+    public void mappedEmpty() {
+        this.listener.onMapped(3, 0, 0);
+
+        assertThat(this.registry.get("client.certificate.mapper.requests").tag("outcome", "none").counter().count()).isEqualTo(1);
+        assertThat(this.registry.get("client.certificate.mapper.chain.length").summary().count()).isZero();
+    }
+
+    @Test
+    public void rejected() {
+        this.listener.onFailed(FailureReason.TOO_LARGE, 1 << 20, 0);
+
+        assertThat(this.registry.get("client.certificate.mapper.requests").tag("outcome", "rejected").counter().count()).isEqualTo(1);
+        assertThat(this.registry.get("client.certificate.mapper.requests").tag("outcome", "failed").counter().count()).isZero();
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class StripedPoolTest {
+
+    @Test
+    public void acquireEmpty() {
+        assertThat(new StripedPool<String>(4).acquire()).isNull();
+    }
+
+    @Test
+    public void acquireReleased() {
+        StripedPool<String> pool = new StripedPool<>(4);
+        pool.release("test-value");
+
+        assertThat(pool.acquire()).isEqualTo("test-value");
+        assertThat(pool.acquire()).isNull();
+    }
+
+    @Test
+    public void releaseFull() {
+        StripedPool<String> pool = new StripedPool<>(2);
+        pool.release("test-value-1");
+        pool.release("test-value-2");
+        pool.release("test-value-3");
+
+        assertThat(pool.acquire()).isNotNull();
+        assertThat(pool.acquire()).isNotNull();
+        assertThat(pool.acquire()).isNull();
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class StructuredHeaderTest {
+
+    @Test
+    public void absentValues() {
+        assertThat(elements("By=spiffe://a;URI=spiffe://b")).containsExactly("hash=null cert=null chain=null");
+    }
+
+    @Test
+    public void caseInsensitiveKeys() {
+        assertThat(elements("HASH=1;cert=2;CHAIN=3")).containsExactly("hash=1 cert=2 chain=3");
+    }
+
+    @Test
+    public void escapedQuotes() {
+        assertThat(elements("Subject=\"CN=\\\"a\\\",OU=b\";Cert=\"c\"")).containsExactly("hash=null cert=c chain=null");
+    }
+
+    @Test
+    public void isStructured() {
+        assertThat(StructuredHeader.isStructured("By=spiffe://a;Hash=1")).isTrue();
+        assertThat(StructuredHeader.isStructured(" hash=1")).isTrue();
+        assertThat(StructuredHeader.isStructured("MIIB=")).isFalse();
+        assertThat(StructuredHeader.isStructured("-----BEGIN CERTIFICATE-----")).isFalse();
+        assertThat(StructuredHeader.isStructured("Cert")).isFalse();
+    }
+
+    @Test
+    public void multipleElements() {
+        assertThat(elements("By=a;Hash=1;Cert=\"b\",By=c;Hash=2;Chain=\"d\"")).containsExactly("hash=1 cert=b chain=null", "hash=2 cert=null chain=d");
+    }
+
+    @Test
+    public void quotedDelimiters() {
+        assertThat(elements("Subject=\"CN=a,OU=b;c\";Hash=1 ; Cert = \"d;e,f\" ")).containsExactly("hash=1 cert=d;e,f chain=null");
+    }
+
+    @Test
+    public void unterminatedQuote() {
+        assertThat(elements("Hash=1;Cert=\"a,b")).containsExactly("hash=1 cert=a,b chain=null");
+    }
+
+    private static List<String> elements(String value) {
+        List<String> elements = new ArrayList<>();
+
+        for (StructuredHeader header = new StructuredHeader(value); header.next(); ) {
+            elements.add(String.format("hash=%s cert=%s chain=%s", range(value, header.hashStart(), header.hashEnd()),
+                range(value, header.certStart(), header.certEnd()), range(value, header.chainStart(), header.chainEnd())));
+        }
+
+        return elements;
+    }
+
+    private static String range(String value, int start, int end) {
+        return start < 0 ? "null" : value.substring(start, end);
+    }
+
+}
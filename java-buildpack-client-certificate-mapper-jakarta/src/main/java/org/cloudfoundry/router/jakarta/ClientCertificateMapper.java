@@ -21,40 +21,48 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.FilterConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletConnection;
 import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Base64;
-import java.util.Collections;
 import java.util.Enumeration;
-import java.util.List;
-import java.util.logging.Logger;
+import org.cloudfoundry.router.core.ClientCertificateEngine;
+import org.cloudfoundry.router.core.InstanceIdentity;
 
 /**
  * A Servlet {@link Filter} that translates the {@code X-Forwarded-Client} HTTP header to the {@code jakarta.servlet.request.X509Certificate} Servlet attribute.  This implementation handles both
- * multiple headers as well as the <a href=https://tools.ietf.org/html/rfc7230#section-3.2.2>RFC 7230</a> comma delimited equivalent.
+ * multiple headers as well as the <a href=https://tools.ietf.org/html/rfc7230#section-3.2.2>RFC 7230</a> comma delimited equivalent.  Decoding, parsing and
+ * caching are delegated to a {@link ClientCertificateEngine}, shared with the other adapters in the process.  If the leaf certificate carries a Cloud Foundry
+ * instance identity, it is also published as the {@link InstanceIdentity#ATTRIBUTE} attribute.  If trusted proxies are configured, the header of a request
+ * from any other peer is dropped before it is read.  The peer is the {@link #PEER_ADDRESS} attribute published by a {@link PeerAddressValve} or, without one,
+ * the remote address, which must then not have been rewritten from forwarded headers.  The chain is reused by the later requests of a connection, such as the
+ * streams of an HTTP/2 connection, that carry the same header, identified by their {@link ServletConnection}.  In lazy mode, mapping is deferred until the
+ * attribute is first read through the {@link LazyClientCertificateRequest} passed down the chain.  A request is mapped at most once: forward, include, error
+ * and async dispatches of a request that has already been mapped reuse its attributes rather than parsing the header again.
  */
 final class ClientCertificateMapper implements Filter {
 
     static final String ATTRIBUTE = "jakarta.servlet.request.X509Certificate";
 
-    static final String HEADER = "X-Forwarded-Client-Cert";
+    static final String HEADER = ClientCertificateEngine.HEADER;
 
-    private final Logger logger = Logger.getLogger(this.getClass().getName());
+    static final String MAPPED = ClientCertificateMapper.class.getName() + ".MAPPED";
 
-    private final CertificateFactory certificateFactory;
+    static final String PEER_ADDRESS = ClientCertificateMapper.class.getName() + ".PEER_ADDRESS";
+
+    private final ClientCertificateEngine engine;
+
+    private final boolean lazy;
 
     ClientCertificateMapper() throws CertificateException {
-        this.certificateFactory = CertificateFactory.getInstance("X.509");
+        this(ClientCertificateEngine.getDefault(), false);
+    }
+
+    ClientCertificateMapper(ClientCertificateEngine engine, boolean lazy) {
+        this.engine = engine;
+        this.lazy = lazy;
     }
 
     @Override
@@ -64,15 +72,13 @@ final class ClientCertificateMapper implements Filter {
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
-        if (request instanceof HttpServletRequest) {
-            try {
-                List<X509Certificate> certificates = getCertificates((HttpServletRequest) request);
+        if (request instanceof HttpServletRequest && request.getAttribute(MAPPED) == null) {
+            HttpServletRequest httpRequest = (HttpServletRequest) request;
 
-                if (!certificates.isEmpty()) {
-                    request.setAttribute(ATTRIBUTE, certificates.toArray(new X509Certificate[0]));
-                }
-            } catch (CertificateException e) {
-                this.logger.warning("Unable to parse certificates in X-Forwarded-Client-Cert");
+            if (!this.lazy || httpRequest.getHeader(HEADER) == null) {
+                mapCertificates(httpRequest);
+            } else {
+                request = new LazyClientCertificateRequest(httpRequest, this);
             }
         }
 
@@ -84,53 +90,60 @@ final class ClientCertificateMapper implements Filter {
 
     }
 
-    private byte[] decodeHeader(String rawCertificate) {
-        try {
-            return Base64.getDecoder().decode(rawCertificate);
-        } catch (IllegalArgumentException e1) {
-            try {
-                return URLDecoder.decode(rawCertificate, "utf-8").getBytes();
-            } catch (UnsupportedEncodingException e2) {
-                throw new IllegalArgumentException("Header contains value that is neither base64 nor url encoded");
-            }
-        }
+    ClientCertificateEngine getEngine() {
+        return this.engine;
     }
 
-    private List<X509Certificate> getCertificates(HttpServletRequest request) throws CertificateException, IOException {
-        List<X509Certificate> certificates = new ArrayList<>();
+    void mapCertificates(HttpServletRequest request) {
+        request.setAttribute(MAPPED, Boolean.TRUE);
+
+        try {
+            // The header of a peer other than a trusted proxy is dropped, unread, as though absent
+            String rawHeader = this.engine.isTrustedProxy(getPeerAddress(request)) ? getRawHeader(request) : null;
+            X509Certificate[] certificates = this.engine.map(rawHeader, rawHeader == null ? null : getConnectionId(request));
+
+            if (certificates.length != 0) {
+                request.setAttribute(ATTRIBUTE, certificates);
 
-        for (String rawCertificate : getRawCertificates(request)) {
-            try (InputStream in = new ByteArrayInputStream(decodeHeader(rawCertificate))) {
-                certificates.add((X509Certificate) this.certificateFactory.generateCertificate(in));
+                InstanceIdentity identity = this.engine.getInstanceIdentity(certificates[0]);
+                if (identity != null) {
+                    request.setAttribute(InstanceIdentity.ATTRIBUTE, identity);
+                }
             }
+        } catch (CertificateException e) {
+            // Reported, rate-limited and aggregated, by the engine
         }
+    }
+
+    private static String getConnectionId(ServletRequest request) {
+        ServletConnection connection = request.getServletConnection();
+        return connection == null ? null : connection.getConnectionId();
+    }
 
-        return certificates;
+    // The peer address published by a PeerAddressValve, which forwarded headers cannot rewrite, or else the remote address
+    private static String getPeerAddress(ServletRequest request) {
+        Object peerAddress = request.getAttribute(PEER_ADDRESS);
+        return peerAddress == null ? request.getRemoteAddr() : (String) peerAddress;
     }
 
-    private List<String> getRawCertificates(HttpServletRequest request) {
+    private String getRawHeader(HttpServletRequest request) {
         Enumeration<String> candidates = request.getHeaders(HEADER);
 
-        if (candidates == null) {
-            return Collections.emptyList();
+        if (candidates == null || !candidates.hasMoreElements()) {
+            return null;
         }
 
-        List<String> rawCertificates = new ArrayList<>();
-        while (candidates.hasMoreElements()) {
-            String candidate = candidates.nextElement();
-
-            if (hasMultipleCertificates(candidate)) {
-                rawCertificates.addAll(Arrays.asList(candidate.split(",")));
-            } else {
-                rawCertificates.add(candidate);
-            }
+        String rawHeader = candidates.nextElement();
+        if (!candidates.hasMoreElements()) {
+            return rawHeader;
         }
 
-        return rawCertificates;
-    }
+        StringBuilder sb = new StringBuilder(rawHeader);
+        while (candidates.hasMoreElements()) {
+            sb.append(',').append(candidates.nextElement());
+        }
 
-    private boolean hasMultipleCertificates(String candidate) {
-        return candidate.indexOf(',') != -1;
+        return sb.toString();
     }
 
 }
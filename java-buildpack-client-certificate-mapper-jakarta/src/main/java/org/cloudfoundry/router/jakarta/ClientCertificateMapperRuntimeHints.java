@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+/**
+ * {@link RuntimeHintsRegistrar} for the client certificate mapper.  The mapper itself uses no reflection, but the JCA instantiates security provider
+ * implementations reflectively, so the {@code CertificateFactory}, {@code CertPathValidator} and key factory implementations it looks up by name must be
+ * registered for a native image to decode, parse and validate certificates.
+ */
+final class ClientCertificateMapperRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final String[] SECURITY_PROVIDER_TYPES = new String[]{
+        "sun.security.ec.ECKeyFactory",
+        "sun.security.provider.X509Factory",
+        "sun.security.provider.certpath.PKIXCertPathValidator",
+        "sun.security.rsa.RSAKeyFactory$Legacy"
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (String type : SECURITY_PROVIDER_TYPES) {
+            hints.reflection().registerType(TypeReference.of(type), MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+    }
+
+}
@@ -22,32 +22,105 @@ import jakarta.servlet.ServletContainerInitializer;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
 
+import java.nio.file.Paths;
 import java.security.cert.CertificateException;
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.Locale;
 import java.util.Set;
+import org.cloudfoundry.router.core.ClientCertificateEngine;
 
 public final class ClientCertificateMapperServletContainerInitializer implements ServletContainerInitializer {
 
+    static final String CACHE_FILE = "cloudfoundry.client-certificate-mapper.cache.file";
+
+    static final String DISPATCHER_TYPES = "cloudfoundry.client-certificate-mapper.dispatcher-types";
+
+    static final String TRUSTED_PROXIES = "cloudfoundry.client-certificate-mapper.trusted-proxies";
+
+    static final String URL_PATTERNS = "cloudfoundry.client-certificate-mapper.url-patterns";
+
+    static final String WARM_UP = "cloudfoundry.client-certificate-mapper.warm-up";
+
     @Override
     public void onStartup(Set<Class<?>> c, ServletContext ctx) throws ServletException {
         if (ctx == null) {
             return;
         }
 
-        FilterRegistration.Dynamic filterRegistration = addFilter(ctx);
+        ClientCertificateMapper mapper = createMapper(ctx);
+
+        FilterRegistration.Dynamic filterRegistration = ctx.addFilter("clientCertificateMapper", mapper);
         if (filterRegistration == null) {
             return;
         }
 
-        filterRegistration.addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), false, "/*");
+        filterRegistration.addMappingForUrlPatterns(getDispatcherTypes(ctx), false, getUrlPatterns(ctx));
+
+        if (Boolean.parseBoolean(getParameter(ctx, WARM_UP))) {
+            mapper.getEngine().warmUp(ClientCertificateEngine.DEFAULT_WARM_UP_ITERATIONS);
+        }
     }
 
-    private FilterRegistration.Dynamic addFilter(ServletContext ctx) throws ServletException {
+    private ClientCertificateMapper createMapper(ServletContext ctx) throws ServletException {
+        String cacheFile = getParameter(ctx, CACHE_FILE);
+        String trustedProxies = getParameter(ctx, TRUSTED_PROXIES);
+
         try {
-            return ctx.addFilter("clientCertificateMapper", new ClientCertificateMapper());
+            if (cacheFile == null && trustedProxies == null) {
+                return new ClientCertificateMapper();
+            }
+
+            // Configuration is fixed when the engine is built, so a configured mapper gets an engine of its own rather than the shared default
+            ClientCertificateEngine.Builder builder = ClientCertificateEngine.builder();
+
+            if (cacheFile != null) {
+                builder.cacheFile(Paths.get(cacheFile));
+            }
+
+            if (trustedProxies != null) {
+                builder.trustedProxies(Arrays.asList(split(trustedProxies)));
+            }
+
+            return new ClientCertificateMapper(builder.build(), false);
         } catch (CertificateException e) {
             throw new ServletException(e);
+        } catch (IllegalArgumentException e) {
+            throw new ServletException(String.format("Invalid trusted proxy in %s: %s", TRUSTED_PROXIES, e.getMessage()), e);
         }
     }
 
+    private EnumSet<DispatcherType> getDispatcherTypes(ServletContext ctx) throws ServletException {
+        String value = getParameter(ctx, DISPATCHER_TYPES);
+        if (value == null) {
+            return EnumSet.allOf(DispatcherType.class);
+        }
+
+        EnumSet<DispatcherType> dispatcherTypes = EnumSet.noneOf(DispatcherType.class);
+        for (String name : split(value)) {
+            try {
+                dispatcherTypes.add(DispatcherType.valueOf(name.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new ServletException(String.format("Invalid dispatcher type in %s: %s", DISPATCHER_TYPES, name), e);
+            }
+        }
+
+        return dispatcherTypes;
+    }
+
+    // Configured with a context init parameter, or with a system property for applications whose descriptor cannot be changed
+    private String getParameter(ServletContext ctx, String name) {
+        String value = ctx.getInitParameter(name);
+        return value != null ? value : System.getProperty(name);
+    }
+
+    private String[] getUrlPatterns(ServletContext ctx) {
+        String value = getParameter(ctx, URL_PATTERNS);
+        return value == null ? new String[]{ "/*" } : split(value);
+    }
+
+    private static String[] split(String value) {
+        return value.trim().split("\\s*,\\s*");
+    }
+
 }
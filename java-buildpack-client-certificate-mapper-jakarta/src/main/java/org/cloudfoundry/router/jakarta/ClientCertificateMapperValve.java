@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import jakarta.servlet.ServletException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import org.apache.catalina.Valve;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.buf.CharChunk;
+import org.apache.tomcat.util.buf.MessageBytes;
+import org.apache.tomcat.util.http.MimeHeaders;
+import org.cloudfoundry.router.core.ClientCertificateEngine;
+import org.cloudfoundry.router.core.InstanceIdentity;
+
+/**
+ * A Tomcat {@link Valve} that translates the {@code X-Forwarded-Client} HTTP header to the {@code jakarta.servlet.request.X509Certificate} Servlet attribute,
+ * as {@link ClientCertificateMapper} does, but before the servlet pipeline starts.  Installed on the engine, it covers every context without a filter
+ * dispatch, and maps the connector's raw header bytes in place, as a {@link ByteBuffer} over the request's {@link ByteChunk}, so that no {@link String} is
+ * made of the header unless it misses the engine's cache.  Multiple headers are joined with commas, as by the filter.  Mapping is always eager, and the request
+ * is marked as mapped so that a {@link ClientCertificateMapper} also in its path does not map it again.  Trusted proxies are checked against the connection's
+ * peer address, which Tomcat's {@code RemoteIpValve} does not rewrite from forwarded headers, so the valve may run anywhere in the engine's pipeline.
+ */
+final class ClientCertificateMapperValve extends ValveBase {
+
+    private final ClientCertificateEngine engine;
+
+    ClientCertificateMapperValve(ClientCertificateEngine engine) {
+        super(true);
+        this.engine = engine;
+    }
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        mapCertificates(request);
+        getNext().invoke(request, response);
+    }
+
+    ClientCertificateEngine getEngine() {
+        return this.engine;
+    }
+
+    void mapCertificates(Request request) {
+        request.setAttribute(ClientCertificateMapper.MAPPED, Boolean.TRUE);
+
+        try {
+            // The header of a peer other than a trusted proxy is dropped, unread, as though absent
+            X509Certificate[] certificates = this.engine.isTrustedProxy(request.getPeerAddr()) ?
+                map(request.getCoyoteRequest().getMimeHeaders()) : this.engine.map((CharSequence) null);
+
+            if (certificates.length != 0) {
+                request.setAttribute(ClientCertificateMapper.ATTRIBUTE, certificates);
+
+                InstanceIdentity identity = this.engine.getInstanceIdentity(certificates[0]);
+                if (identity != null) {
+                    request.setAttribute(InstanceIdentity.ATTRIBUTE, identity);
+                }
+            }
+        } catch (CertificateException e) {
+            // Reported, rate-limited and aggregated, by the engine
+        }
+    }
+
+    private X509Certificate[] map(MimeHeaders headers) throws CertificateException {
+        int index = headers.findHeader(ClientCertificateMapper.HEADER, 0);
+        if (index < 0) {
+            return this.engine.map((CharSequence) null);
+        }
+
+        int next = headers.findHeader(ClientCertificateMapper.HEADER, index + 1);
+        if (next < 0) {
+            return map(headers.getValue(index));
+        }
+
+        // Repeated headers are rare enough that they are joined into a copy
+        StringBuilder sb = new StringBuilder(headers.getValue(index).toString());
+        for (; next >= 0; next = headers.findHeader(ClientCertificateMapper.HEADER, next + 1)) {
+            sb.append(',').append(headers.getValue(next).toString());
+        }
+
+        return this.engine.map(sb);
+    }
+
+    private X509Certificate[] map(MessageBytes value) throws CertificateException {
+        switch (value.getType()) {
+            case MessageBytes.T_BYTES:
+                ByteChunk bytes = value.getByteChunk();
+                return this.engine.map(ByteBuffer.wrap(bytes.getBuffer(), bytes.getStart(), bytes.getLength()));
+            case MessageBytes.T_CHARS:
+                CharChunk chars = value.getCharChunk();
+                return this.engine.map(CharBuffer.wrap(chars.getBuffer(), chars.getStart(), chars.getLength()));
+            case MessageBytes.T_STR:
+                return this.engine.map(value.getString());
+            default:
+                return this.engine.map((CharSequence) null);
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import org.cloudfoundry.router.core.ClientCertificateEngine;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.security.cert.CertificateException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Budgets, in bytes allocated per {@code doFilter} call, for each header shape.  Each budget is the larger of the allocations measured by this test in the
+ * jakarta and javax modules on JDK 17, plus 25%, rounded up to a multiple of 512 bytes.  The headroom allows for differences between JVMs and in
+ * {@link MockHttpServletRequest}, but an increase as large as a redundant copy of the header fails the build.  Cached budgets are measured with a warm cache;
+ * uncached budgets with caching disabled, so that every call decodes and parses.  The exception is the uncached invalid header, whose allocation is mostly the
+ * stack traces of the exceptions thrown by the {@code CertificateFactory} and so varies with the JDK and the depth of the stack.  Its budget is deliberately
+ * wide, so that it only fails on a regression well beyond that variation.
+ */
+public final class ClientCertificateMapperAllocationTest {
+
+    private static final FilterChain CHAIN = (request, response) -> {
+    };
+
+    private static final int ITERATIONS = 1_000;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final int WARM_UP_ROUNDS = 10;
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @BeforeAll
+    public static void enable() {
+        assumeTrue(THREAD_MX_BEAN.isThreadAllocatedMemorySupported(), "Thread allocated memory is not supported");
+        THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void emptyHeader() throws CertificateException, IOException, ServletException {
+        assertBudget(1_024, 1_024, "");
+    }
+
+    @Test
+    public void invalidHeader() throws CertificateException, IOException, ServletException {
+        assertBudget(1_536, 65_536, "Invalid Header Value");
+    }
+
+    @Test
+    public void multipleHeaders() throws CertificateException, IOException, ServletException {
+        assertBudget(7_680, 23_040, ClientCertificateMapperTest.CERTIFICATE_1, ClientCertificateMapperTest.CERTIFICATE_2);
+    }
+
+    @Test
+    public void multipleInOneHeader() throws CertificateException, IOException, ServletException {
+        assertBudget(1_024, 16_384, String.format("%s,%s", ClientCertificateMapperTest.CERTIFICATE_1, ClientCertificateMapperTest.CERTIFICATE_2));
+    }
+
+    @Test
+    public void multipleInOneHeaderWithWhitespace() throws CertificateException, IOException, ServletException {
+        assertBudget(1_024, 16_384, String.format("%s, %s", ClientCertificateMapperTest.CERTIFICATE_1, ClientCertificateMapperTest.CERTIFICATE_2));
+    }
+
+    @Test
+    public void nginxHeader() throws CertificateException, IOException, ServletException {
+        assertBudget(1_024, 7_168, ClientCertificateMapperTest.NGINX_ESCAPED_CERT);
+    }
+
+    @Test
+    public void noHeader() throws CertificateException, IOException, ServletException {
+        assertBudget(512, 512);
+    }
+
+    @Test
+    public void pemHeader() throws CertificateException, IOException, ServletException {
+        assertBudget(1_024, 7_168, String.format("-----BEGIN CERTIFICATE----- %s -----END CERTIFICATE-----", ClientCertificateMapperTest.CERTIFICATE_1));
+    }
+
+    @Test
+    public void singleHeader() throws CertificateException, IOException, ServletException {
+        assertBudget(1_024, 7_168, ClientCertificateMapperTest.CERTIFICATE_1);
+    }
+
+    private long allocatedBytesPerRequest(ClientCertificateMapper mapper, String... headers) throws IOException, ServletException {
+        // Requests are created ahead of each round, as a request is only mapped once, so that only the filter's allocation is measured
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            for (MockHttpServletRequest request : requests(headers)) {
+                mapper.doFilter(request, this.response, CHAIN);
+            }
+        }
+
+        MockHttpServletRequest[] requests = requests(headers);
+        @SuppressWarnings("deprecation")
+        long thread = Thread.currentThread().getId();
+
+        long start = THREAD_MX_BEAN.getThreadAllocatedBytes(thread);
+        for (MockHttpServletRequest request : requests) {
+            mapper.doFilter(request, this.response, CHAIN);
+        }
+        long end = THREAD_MX_BEAN.getThreadAllocatedBytes(thread);
+
+        return (end - start) / requests.length;
+    }
+
+    private void assertBudget(long cached, long uncached, String... headers) throws CertificateException, IOException, ServletException {
+        ClientCertificateMapper cachedMapper = new ClientCertificateMapper(ClientCertificateEngine.builder().build(), false);
+        assertThat(allocatedBytesPerRequest(cachedMapper, headers)).as("bytes allocated per request with a warm cache").isLessThanOrEqualTo(cached);
+
+        ClientCertificateMapper uncachedMapper = new ClientCertificateMapper(ClientCertificateEngine.builder()
+            .cacheMaximumSize(0)
+            .negativeCacheMaximumSize(0)
+            .build(), false);
+        assertThat(allocatedBytesPerRequest(uncachedMapper, headers)).as("bytes allocated per request without caching").isLessThanOrEqualTo(uncached);
+    }
+
+    private static MockHttpServletRequest[] requests(String... headers) {
+        MockHttpServletRequest[] requests = new MockHttpServletRequest[ITERATIONS];
+
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = new MockHttpServletRequest();
+
+            for (String header : headers) {
+                requests[i].addHeader(ClientCertificateMapper.HEADER, header);
+            }
+        }
+
+        return requests;
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import org.cloudfoundry.router.core.ClientCertificateEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.tomcat.servlet.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.mock.web.MockServletContext;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterRegistration;
+import jakarta.servlet.ServletException;
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public final class ClientCertificateMapperAutoConfigurationTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(ClientCertificateMapperAutoConfiguration.class))
+        .withPropertyValues("VCAP_APPLICATION={}");
+
+    @Test
+    public void dispatcherTypes() {
+        this.contextRunner
+            .withPropertyValues("cloudfoundry.client-certificate-mapper.dispatcher-types=request,error")
+            .run(context -> verify(register(context)).addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST, DispatcherType.ERROR), false, "/*"));
+    }
+
+    @Test
+    public void dispatcherTypesDefault() {
+        this.contextRunner.run(context -> verify(register(context)).addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*"));
+    }
+
+    @Test
+    public void filter() {
+        this.contextRunner.run(context -> {
+            assertThat(context).hasSingleBean(ClientCertificateEngine.class);
+            assertThat(context).hasSingleBean(ClientCertificateMapper.class);
+            assertThat(context).hasSingleBean(FilterRegistrationBean.class);
+        });
+    }
+
+    @Test
+    public void notCloudFoundry() {
+        new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ClientCertificateMapperAutoConfiguration.class))
+            .run(context -> assertThat(context).doesNotHaveBean(ClientCertificateEngine.class));
+    }
+
+    @Test
+    public void peerAddressNotTomcat() {
+        this.contextRunner
+            .withPropertyValues("cloudfoundry.client-certificate-mapper.trusted-proxies=10.0.0.0/8")
+            .run(context -> assertThatIllegalStateException()
+                .isThrownBy(() -> customize(context, "clientCertificateMapperPeerAddressCheck", new WebServerFactory() {
+
+                }))
+                .withMessageContaining("server.forward-headers-strategy=none"));
+    }
+
+    @Test
+    public void peerAddressNotTomcatWithoutForwardedHeaders() {
+        this.contextRunner
+            .withPropertyValues("cloudfoundry.client-certificate-mapper.trusted-proxies=10.0.0.0/8", "server.forward-headers-strategy=none")
+            .run(context -> customize(context, "clientCertificateMapperPeerAddressCheck", new WebServerFactory() {
+
+            }));
+    }
+
+    @Test
+    public void peerAddressTomcat() {
+        this.contextRunner
+            .withPropertyValues("cloudfoundry.client-certificate-mapper.trusted-proxies=10.0.0.0/8")
+            .run(context -> {
+                TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory();
+                customize(context, "clientCertificateMapperPeerAddressCheck", factory);
+                customize(context, "clientCertificateMapperPeerAddressCustomizer", factory);
+
+                assertThat(factory.getEngineValves()).hasOnlyElementsOfType(PeerAddressValve.class).hasSize(1);
+            });
+    }
+
+    @Test
+    public void peerAddressTomcatWithoutTrustedProxies() {
+        this.contextRunner.run(context -> {
+            TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory();
+            customize(context, "clientCertificateMapperPeerAddressCustomizer", factory);
+
+            assertThat(factory.getEngineValves()).isEmpty();
+        });
+    }
+
+    @Test
+    public void tomcatValve() {
+        this.contextRunner
+            .withPropertyValues("cloudfoundry.client-certificate-mapper.tomcat-valve=true")
+            .run(context -> {
+                assertThat(context).hasSingleBean(ClientCertificateEngine.class);
+                assertThat(context).doesNotHaveBean(Filter.class);
+                assertThat(context).doesNotHaveBean(FilterRegistrationBean.class);
+            });
+    }
+
+    // Registers the filter with a servlet context, returning the registration whose mappings were added
+    private static FilterRegistration.Dynamic register(ApplicationContext context) throws ServletException {
+        FilterRegistration.Dynamic dynamic = mock(FilterRegistration.Dynamic.class);
+
+        context.getBean(FilterRegistrationBean.class).onStartup(new MockServletContext() {
+
+            @Override
+            public FilterRegistration.Dynamic addFilter(String filterName, Filter filter) {
+                return dynamic;
+            }
+        });
+
+        return dynamic;
+    }
+
+    @Test
+    public void tomcatValveNotTomcat() {
+        this.contextRunner
+            .withPropertyValues("cloudfoundry.client-certificate-mapper.tomcat-valve=true")
+            .run(context -> assertThatIllegalStateException()
+                .isThrownBy(() -> customize(context, "clientCertificateMapperValveCheck", new WebServerFactory() {
+
+                }))
+                .withMessageContaining("requires embedded Tomcat"));
+    }
+
+    @Test
+    public void tomcatValveTomcat() {
+        this.contextRunner
+            .withPropertyValues("cloudfoundry.client-certificate-mapper.tomcat-valve=true")
+            .run(context -> {
+                TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory();
+                customize(context, "clientCertificateMapperValveCheck", factory);
+                customize(context, "clientCertificateMapperValveCustomizer", factory);
+
+                assertThat(factory.getEngineValves()).hasOnlyElementsOfType(ClientCertificateMapperValve.class).hasSize(1);
+            });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void customize(ApplicationContext context, String name, WebServerFactory factory) {
+        context.getBean(name, WebServerFactoryCustomizer.class).customize(factory);
+    }
+
+}
@@ -17,15 +17,18 @@
 package org.cloudfoundry.router.jakarta;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.mock.web.MockServletContext;
 
 import jakarta.servlet.DispatcherType;
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterRegistration;
 import jakarta.servlet.ServletException;
+import java.nio.file.Path;
 import java.util.EnumSet;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -34,6 +37,9 @@ public final class ClientCertificateMapperServletContainerInitializerTest {
 
     private final FilterRegistration.Dynamic dynamic = mock(FilterRegistration.Dynamic.class);
 
+    @TempDir
+    Path directory;
+
     @Test
     public void onStartupAlreadyRegistered() throws ServletException {
         MockServletContext servletContext = new MockServletContext() {
@@ -50,11 +56,96 @@ public final class ClientCertificateMapperServletContainerInitializerTest {
         new ClientCertificateMapperServletContainerInitializer().onStartup(null, servletContext);
     }
 
+    @Test
+    public void onStartupCacheFile() throws ServletException {
+        Path cacheFile = this.directory.resolve("cache");
+        MockServletContext servletContext = new MockServletContext() {
+
+            @Override
+            public FilterRegistration.Dynamic addFilter(String filterName, Filter filter) {
+                return dynamic;
+            }
+        };
+        servletContext.addInitParameter(ClientCertificateMapperServletContainerInitializer.CACHE_FILE, cacheFile.toString());
+
+        new ClientCertificateMapperServletContainerInitializer().onStartup(null, servletContext);
+
+        assertThat(cacheFile).exists();
+    }
+
+    @Test
+    public void onStartupConfigured() throws ServletException {
+        MockServletContext servletContext = new MockServletContext() {
+
+            @Override
+            public FilterRegistration.Dynamic addFilter(String filterName, Filter filter) {
+                return dynamic;
+            }
+        };
+        servletContext.addInitParameter(ClientCertificateMapperServletContainerInitializer.DISPATCHER_TYPES, "request, async");
+        servletContext.addInitParameter(ClientCertificateMapperServletContainerInitializer.URL_PATTERNS, "/api/*,/admin/*");
+
+        new ClientCertificateMapperServletContainerInitializer().onStartup(null, servletContext);
+
+        verify(this.dynamic).addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST, DispatcherType.ASYNC), false, "/api/*", "/admin/*");
+    }
+
+    @Test
+    public void onStartupInvalidDispatcherType() {
+        MockServletContext servletContext = new MockServletContext() {
+
+            @Override
+            public FilterRegistration.Dynamic addFilter(String filterName, Filter filter) {
+                return dynamic;
+            }
+        };
+        servletContext.addInitParameter(ClientCertificateMapperServletContainerInitializer.DISPATCHER_TYPES, "request,redirect");
+
+        assertThatThrownBy(() -> new ClientCertificateMapperServletContainerInitializer().onStartup(null, servletContext))
+            .isInstanceOf(ServletException.class)
+            .hasMessageContaining("redirect");
+    }
+
+    @Test
+    public void onStartupInvalidTrustedProxy() {
+        MockServletContext servletContext = new MockServletContext() {
+
+            @Override
+            public FilterRegistration.Dynamic addFilter(String filterName, Filter filter) {
+                return dynamic;
+            }
+        };
+        servletContext.addInitParameter(ClientCertificateMapperServletContainerInitializer.TRUSTED_PROXIES, "10.0.0.0/8,10.0.0.0/33");
+
+        assertThatThrownBy(() -> new ClientCertificateMapperServletContainerInitializer().onStartup(null, servletContext))
+            .isInstanceOf(ServletException.class)
+            .hasMessageContaining("10.0.0.0/33");
+    }
+
     @Test
     public void onStartupNullServletContext() throws ServletException {
         new ClientCertificateMapperServletContainerInitializer().onStartup(null, null);
     }
 
+    @Test
+    public void onStartupTrustedProxies() throws ServletException {
+        MockServletContext servletContext = new MockServletContext() {
+
+            @Override
+            public FilterRegistration.Dynamic addFilter(String filterName, Filter filter) {
+                assertThat(((ClientCertificateMapper) filter).getEngine().isTrustedProxy("10.1.2.3")).isTrue();
+                assertThat(((ClientCertificateMapper) filter).getEngine().isTrustedProxy("192.168.1.1")).isFalse();
+
+                return dynamic;
+            }
+        };
+        servletContext.addInitParameter(ClientCertificateMapperServletContainerInitializer.TRUSTED_PROXIES, "10.0.0.0/8, 2001:db8::/32");
+
+        new ClientCertificateMapperServletContainerInitializer().onStartup(null, servletContext);
+
+        verify(this.dynamic).addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), false, "/*");
+    }
+
     @Test
     public void onStartupUnRegistered() throws ServletException {
         MockServletContext servletContext = new MockServletContext() {
@@ -73,4 +164,20 @@ public final class ClientCertificateMapperServletContainerInitializerTest {
         verify(this.dynamic).addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), false, "/*");
     }
 
+    @Test
+    public void onStartupWarmUp() throws ServletException {
+        MockServletContext servletContext = new MockServletContext() {
+
+            @Override
+            public FilterRegistration.Dynamic addFilter(String filterName, Filter filter) {
+                return dynamic;
+            }
+        };
+        servletContext.addInitParameter(ClientCertificateMapperServletContainerInitializer.WARM_UP, "true");
+
+        new ClientCertificateMapperServletContainerInitializer().onStartup(null, servletContext);
+
+        verify(this.dynamic).addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), false, "/*");
+    }
+
 }
\ No newline at end of file
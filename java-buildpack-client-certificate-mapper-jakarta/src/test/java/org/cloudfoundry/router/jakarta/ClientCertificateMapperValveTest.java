@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.RemoteIpValve;
+import org.apache.catalina.valves.ValveBase;
+import org.cloudfoundry.router.core.ClientCertificateEngine;
+import org.cloudfoundry.router.core.InstanceIdentity;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.ServletException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ClientCertificateMapperValveTest {
+
+    private static final String CERTIFICATE_1 = "" +
+        "MIIDLTCCAhWgAwIBAgIkMDg3ZjVmZGMtOThkNy00MGMwLTY0ZDMtZmQ5NWFmODMx" +
+        "OThkMA0GCSqGSIb3DQEBCwUAMBoxGDAWBgNVBAMMD2NyZWRodWJDbGllbnRDQTAe" +
+        "Fw0xNzA1MDIwMDQ5MzFaFw0xNzA1MDMwMDQ5MzFaMGIxMTAvBgNVBAsTKGFwcDoy" +
+        "MzI4MmZkMS0zNWI0LTQ1ZGQtYTYwMi04Zjc2ZjRhNjBkMTExLTArBgNVBAMTJDA4" +
+        "N2Y1ZmRjLTk4ZDctNDBjMC02NGQzLWZkOTVhZjgzMTk4ZDCCASIwDQYJKoZIhvcN" +
+        "AQEBBQADggEPADCCAQoCggEBAPhcSn56pIVWI0RpwrkC3WcvumLw+3i/oj3YBbEx" +
+        "AUAFJMFl/yt1zpAghLvYOOiiUS/W04SKp8Z9FHlmNabJOzV40RIciSbYCW0tBeFG" +
+        "KNkgolTGamvRLZkkHUJdywEQkvnMG7+2XczDBoCZ7fdBepg6gieSqGhQwl/sO7x/" +
+        "TouvQnujKwJLiXOKQq00TkT+MVEzOZyOMlqFh9r2XjUGuh1HnRM0IAj6buR5663t" +
+        "4lAQqOluTAVNCKWSrAMIKb0G4QPTQ4pKRTeMEnTijFErtKlpzc64HYrBpufj1K/q" +
+        "TxYIy3EgeT3UVSclSub14M4/r/mOmWotYP81BR1Ko7pxV28CAwEAAaMTMBEwDwYD" +
+        "VR0RBAgwBocECv4AAjANBgkqhkiG9w0BAQsFAAOCAQEAuG8A33+Un2rvXA+qAf40" +
+        "gBponN2mjx0drasw/MqBnclUL1MYvOepqcGxxNB/1Ok/bKKDMr03ugVaxzAdoknA" +
+        "NwIyY/ghL6xHs/JrmuSGDs9BeNF0y8TOpQmmjh1EDFtR9YFuTRP1OZ6XBf5fbd80" +
+        "Q684k/Wu8ELywZJd53FKcTPJRQ/Yjn4QFJORtcNFlvMFWTmJLLiMDbI8JBcqMLZH" +
+        "sgdyBtV7kJdZU3nszgFEPspYzFfxQZmq6V+pJb+dmG2jYWrX/R21J9x1dJHBCoPp" +
+        "XcqQm8pYsDxi+HTGS6an78sHqrvU5uQJq2MW8o6iBJR80bFgWSl7GTqK3Xz5iTxU" +
+        "Ew==";
+
+    private static final String CERTIFICATE_2 = "" +
+        "MIIC1TCCAb2gAwIBAgIUL3dmX9jNj2XqQaXv9noNfU84VoowDQYJKoZIhvcNAQEL" +
+        "BQAwGjEYMBYGA1UEAwwPY3JlZGh1YkNsaWVudENBMB4XDTE3MDMzMDE5MTg0NVoX" +
+        "DTE4MDMzMDE5MTg0NVowGjEYMBYGA1UEAwwPY3JlZGh1YkNsaWVudENBMIIBIjAN" +
+        "BgkqhkiG9w0BAQEFAAOCAQ8AMIIBCgKCAQEAz1bJ1NkS+uDl3xMo8fvPFRsXdZUW" +
+        "Un4N9nOfX/bfTWHrDKgW6+qrkkDBW4NLw0IHfgV99HwAygmiMC5La2HJg3JzcRMn" +
+        "dq9MosrNjv5wVtkQAReLVCcZ+EMb4f+0tlbespsfMQpKYfksovXHTSv+zbvbE+pX" +
+        "ObSUYpbZ09LtvbVL9s6hO5E9P9uXuV+ZSOZTISqtEIF6sXOKjx6WTCanG6jqf4+4" +
+        "Lyasffen18NcMld6f7cfEgExUO7OVN86J28+LcILICAOB2m8ug4KnDkigaJp25ou" +
+        "bPl/YnJtMh75buBjiOLI5p9j/n2mliUTKC5fJ54fb6MoMKXgXPAC7bcz5wIDAQAB" +
+        "oxMwETAPBgNVHRMBAf8EBTADAQH/MA0GCSqGSIb3DQEBCwUAA4IBAQBXc7cDaA8D" +
+        "Iuoxnt5SVAk9R664OiMxOiQJ7oavdcU1S2hS22MOzAM1gMAwur1C8fmjcHthma4a" +
+        "IFzzyvWlT3cfKmr+e1CVU0fOr1f4kFFval4kSa9uFbqaqQlj6dovoO34W9eadTyN" +
+        "mACol2RdG0tjYWzbUaHdA21PdcezhiVw+PnXbzfKSnjWoxv0id1JTTPnVqfghTjG" +
+        "pEqerOIo3+YRhkUsUEhJ9SFa58dtlKRPtKQjSuMTeBgQiU7WCpueFfPqRM1Ab7bP" +
+        "OeiChAJVyknz/Mu1KmQxoZ43JfCyUIdtT5oE7CWIJt3qVwJYLgykuYV8vXEnIALB" +
+        "p/ob7SaWTJJO";
+
+    private final ClientCertificateMapperValve valve;
+
+    private final org.apache.coyote.Request coyoteRequest = new org.apache.coyote.Request();
+
+    private final Request request = new Request(new Connector(), this.coyoteRequest);
+
+    public ClientCertificateMapperValveTest() throws CertificateException {
+        this.valve = new ClientCertificateMapperValve(ClientCertificateEngine.builder().build());
+    }
+
+    @Test
+    public void byteChunk() {
+        byte[] bytes = String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2).getBytes(StandardCharsets.ISO_8859_1);
+        this.coyoteRequest.getMimeHeaders().addValue(ClientCertificateMapper.HEADER).setBytes(bytes, 0, bytes.length);
+
+        this.valve.mapCertificates(this.request);
+
+        assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(2);
+        assertThat(this.request.getAttribute(InstanceIdentity.ATTRIBUTE)).isInstanceOf(InstanceIdentity.class);
+    }
+
+    @Test
+    public void charChunk() {
+        char[] chars = CERTIFICATE_1.toCharArray();
+        this.coyoteRequest.getMimeHeaders().addValue(ClientCertificateMapper.HEADER).setChars(chars, 0, chars.length);
+
+        this.valve.mapCertificates(this.request);
+
+        assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(1);
+    }
+
+    @Test
+    public void forgedForwardedFor() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapperValve valve = new ClientCertificateMapperValve(ClientCertificateEngine.builder().trustedProxies(Collections.singletonList("10.0.0.0/8")).build());
+        AtomicReference<String> remoteAddr = new AtomicReference<>();
+        RemoteIpValve remoteIpValve = remoteIpValve(valve, remoteAddr);
+        this.coyoteRequest.peerAddr().setString("192.168.1.1");
+        this.coyoteRequest.remoteAddr().setString("192.168.1.1");
+        this.coyoteRequest.getMimeHeaders().addValue("X-Forwarded-For").setString("10.9.9.9");
+        this.coyoteRequest.getMimeHeaders().addValue(ClientCertificateMapper.HEADER).setString(CERTIFICATE_1);
+
+        remoteIpValve.invoke(this.request, null);
+
+        assertThat(remoteAddr).hasValue("10.9.9.9");
+        assertThat(this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).isNull();
+    }
+
+    @Test
+    public void invalidHeader() {
+        this.coyoteRequest.getMimeHeaders().addValue(ClientCertificateMapper.HEADER).setString("Invalid Header Value");
+
+        this.valve.mapCertificates(this.request);
+
+        assertThat(this.request.getAttribute(InstanceIdentity.ATTRIBUTE)).isNull();
+    }
+
+    @Test
+    public void invoke() throws IOException, ServletException {
+        AtomicBoolean invoked = new AtomicBoolean();
+        this.valve.setNext(new ValveBase() {
+
+            @Override
+            public void invoke(Request request, Response response) {
+                invoked.set(true);
+            }
+
+        });
+        this.coyoteRequest.getMimeHeaders().addValue(ClientCertificateMapper.HEADER).setString(CERTIFICATE_1);
+
+        this.valve.invoke(this.request, null);
+
+        assertThat(invoked).isTrue();
+        assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(1);
+    }
+
+    @Test
+    public void multipleHeaders() {
+        this.coyoteRequest.getMimeHeaders().addValue(ClientCertificateMapper.HEADER).setString(CERTIFICATE_1);
+        this.coyoteRequest.getMimeHeaders().addValue(ClientCertificateMapper.HEADER).setString(CERTIFICATE_2);
+
+        this.valve.mapCertificates(this.request);
+
+        assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(2);
+    }
+
+    @Test
+    public void remoteIpValve() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapperValve valve = new ClientCertificateMapperValve(ClientCertificateEngine.builder().trustedProxies(Collections.singletonList("10.0.0.0/8")).build());
+        AtomicReference<String> remoteAddr = new AtomicReference<>();
+        RemoteIpValve remoteIpValve = remoteIpValve(valve, remoteAddr);
+        this.coyoteRequest.peerAddr().setString("10.1.2.3");
+        this.coyoteRequest.remoteAddr().setString("10.1.2.3");
+        this.coyoteRequest.getMimeHeaders().addValue("X-Forwarded-For").setString("203.0.113.7");
+        this.coyoteRequest.getMimeHeaders().addValue(ClientCertificateMapper.HEADER).setString(CERTIFICATE_1);
+
+        remoteIpValve.invoke(this.request, null);
+
+        assertThat(remoteAddr).hasValue("203.0.113.7");
+        assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(1);
+    }
+
+    @Test
+    public void trustedProxy() throws CertificateException {
+        ClientCertificateMapperValve valve = new ClientCertificateMapperValve(ClientCertificateEngine.builder().trustedProxies(Collections.singletonList("10.0.0.0/8")).build());
+        this.coyoteRequest.peerAddr().setString("10.1.2.3");
+        this.coyoteRequest.getMimeHeaders().addValue(ClientCertificateMapper.HEADER).setString(CERTIFICATE_1);
+
+        valve.mapCertificates(this.request);
+
+        assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(1);
+    }
+
+    @Test
+    public void untrustedProxy() throws CertificateException {
+        ClientCertificateMapperValve valve = new ClientCertificateMapperValve(ClientCertificateEngine.builder().trustedProxies(Collections.singletonList("10.0.0.0/8")).build());
+        this.coyoteRequest.peerAddr().setString("192.168.1.1");
+        this.coyoteRequest.getMimeHeaders().addValue(ClientCertificateMapper.HEADER).setString(CERTIFICATE_1);
+
+        valve.mapCertificates(this.request);
+
+        assertThat(this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).isNull();
+        assertThat(this.request.getAttribute(ClientCertificateMapper.MAPPED)).isEqualTo(Boolean.TRUE);
+        assertThat(valve.getEngine().getCertificateCache().missCount()).isZero();
+    }
+
+    // A RemoteIpValve in front of a valve, followed by a valve that records the remote address the RemoteIpValve left on the request
+    static RemoteIpValve remoteIpValve(ValveBase valve, AtomicReference<String> remoteAddr) {
+        valve.setNext(new ValveBase() {
+
+            @Override
+            public void invoke(Request request, Response response) {
+                remoteAddr.set(request.getRemoteAddr());
+            }
+
+        });
+
+        RemoteIpValve remoteIpValve = new RemoteIpValve();
+        remoteIpValve.setNext(valve);
+        return remoteIpValve;
+    }
+
+}
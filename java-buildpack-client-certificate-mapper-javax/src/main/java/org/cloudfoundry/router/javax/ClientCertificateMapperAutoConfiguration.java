@@ -16,32 +16,168 @@
 
 package org.cloudfoundry.router.javax;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.catalina.Valve;
+import org.cloudfoundry.router.core.ClientCertificateEngine;
+import org.cloudfoundry.router.core.MappingListener;
+import org.cloudfoundry.router.core.MicrometerMappingListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnCloudPlatform;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.cloud.CloudPlatform;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.tomcat.ConfigurableTomcatWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import java.security.cert.CertificateException;
+import java.util.EnumSet;
 
+@AutoConfigureAfter(name = {
+    "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration",
+    "org.springframework.boot.micrometer.metrics.autoconfigure.CompositeMeterRegistryAutoConfiguration"
+})
 @ConditionalOnClass({Filter.class, FilterRegistrationBean.class})
 @ConditionalOnCloudPlatform(CloudPlatform.CLOUD_FOUNDRY)
 @Configuration
+@EnableConfigurationProperties(ClientCertificateMapperProperties.class)
 public class ClientCertificateMapperAutoConfiguration {
 
+    private static final String TOMCAT_FACTORY = "org.springframework.boot.web.embedded.tomcat.ConfigurableTomcatWebServerFactory";
+
+    @Bean
+    @ConditionalOnMissingBean
+    ClientCertificateEngine clientCertificateEngine(ClientCertificateMapperProperties properties, ObjectProvider<MappingListener> listener) throws CertificateException {
+        ClientCertificateMapperProperties.Cache cache = properties.getCache();
+        ClientCertificateMapperProperties.Limits limits = properties.getLimits();
+        ClientCertificateMapperProperties.NegativeCache negativeCache = properties.getNegativeCache();
+        ClientCertificateMapperProperties.Validation validation = properties.getValidation();
+
+        return ClientCertificateEngine.builder()
+            .cacheFile(cache.getFile())
+            .cacheFileMaximumSize(Math.toIntExact(cache.getFileMaximumSize().toBytes()))
+            .cacheMaximumSize(cache.getMaximumSize())
+            .cacheOffHeapCapacity(Math.toIntExact(cache.getOffHeapCapacity().toBytes()))
+            .cacheTimeToLive(cache.getTimeToLive())
+            .diagnosticsInterval(properties.getDiagnosticsInterval())
+            .listener(listener.getIfAvailable(() -> MappingListener.NONE))
+            .maximumCertificateSize(limits.getMaximumCertificateSize())
+            .maximumChainLength(limits.getMaximumChainLength())
+            .maximumHeaderSize(limits.getMaximumHeaderSize())
+            .negativeCacheMaximumSize(negativeCache.getMaximumSize())
+            .negativeCacheTimeToLive(negativeCache.getTimeToLive())
+            .trustStore(validation.getTrustStore())
+            .trustStoreCheckInterval(validation.getCheckInterval())
+            .trustedProxies(properties.getTrustedProxies())
+            .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "cloudfoundry.client-certificate-mapper.warm-up", name = "enabled", havingValue = "true")
+    SmartInitializingSingleton clientCertificateEngineWarmUp(ClientCertificateEngine engine, ClientCertificateMapperProperties properties) {
+        return () -> engine.warmUp(properties.getWarmUp().getIterations());
+    }
+
     @Bean
-    ClientCertificateMapper clientCertificateMapper() throws CertificateException {
-        return new ClientCertificateMapper();
+    @ConditionalOnProperty(prefix = "cloudfoundry.client-certificate-mapper", name = "tomcat-valve", havingValue = "false", matchIfMissing = true)
+    ClientCertificateMapper clientCertificateMapper(ClientCertificateEngine engine, ClientCertificateMapperProperties properties) {
+        return new ClientCertificateMapper(engine, properties.isLazy());
     }
 
     @Bean
-    FilterRegistrationBean clientCertificateMapperFilterRegistrationBean(ClientCertificateMapper mapper) {
+    @ConditionalOnProperty(prefix = "cloudfoundry.client-certificate-mapper", name = "tomcat-valve", havingValue = "false", matchIfMissing = true)
+    FilterRegistrationBean clientCertificateMapperFilterRegistrationBean(ClientCertificateMapper mapper, ClientCertificateMapperProperties properties) {
         FilterRegistrationBean result = new FilterRegistrationBean(mapper);
+        if (properties.getDispatcherTypes() != null) {
+            result.setDispatcherTypes(properties.getDispatcherTypes().isEmpty() ? EnumSet.noneOf(DispatcherType.class) :
+                EnumSet.copyOf(properties.getDispatcherTypes()));
+        }
         result.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        result.setUrlPatterns(properties.getUrlPatterns());
         return result;
     }
 
+    @Bean
+    @ConditionalOnProperty(prefix = "cloudfoundry.client-certificate-mapper", name = "tomcat-valve", havingValue = "false", matchIfMissing = true)
+    WebServerFactoryCustomizer<WebServerFactory> clientCertificateMapperPeerAddressCheck(ClientCertificateMapperProperties properties, Environment environment) {
+        return factory -> {
+            if (!properties.getTrustedProxies().isEmpty() && !isTomcat(factory) &&
+                !"none".equalsIgnoreCase(environment.getProperty("server.forward-headers-strategy", "native"))) {
+                throw new IllegalStateException("cloudfoundry.client-certificate-mapper.trusted-proxies requires embedded Tomcat, which exposes the connection's " +
+                    "peer address, or server.forward-headers-strategy=none, so that the remote address is not rewritten from forwarded headers");
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "cloudfoundry.client-certificate-mapper", name = "tomcat-valve", havingValue = "true")
+    WebServerFactoryCustomizer<WebServerFactory> clientCertificateMapperValveCheck() {
+        return factory -> {
+            if (!isTomcat(factory)) {
+                throw new IllegalStateException("cloudfoundry.client-certificate-mapper.tomcat-valve=true requires embedded Tomcat; set it to false to map " +
+                    "certificates in a filter instead");
+            }
+        };
+    }
+
+    // Whether a web server factory is embedded Tomcat's, without loading Tomcat's classes if they are absent
+    private static boolean isTomcat(WebServerFactory factory) {
+        ClassLoader classLoader = factory.getClass().getClassLoader();
+        return ClassUtils.isPresent(TOMCAT_FACTORY, classLoader) && ClassUtils.resolveClassName(TOMCAT_FACTORY, classLoader).isInstance(factory);
+    }
+
+    @ConditionalOnClass(MeterRegistry.class)
+    @Configuration
+    static class MetricsConfiguration {
+
+        @Bean
+        @ConditionalOnBean(MeterRegistry.class)
+        @ConditionalOnMissingBean
+        MappingListener clientCertificateMappingListener(MeterRegistry registry) {
+            return new MicrometerMappingListener(registry);
+        }
+
+    }
+
+    @ConditionalOnClass({Valve.class, ConfigurableTomcatWebServerFactory.class})
+    @ConditionalOnProperty(prefix = "cloudfoundry.client-certificate-mapper", name = "tomcat-valve", havingValue = "false", matchIfMissing = true)
+    @Configuration
+    static class TomcatPeerAddressConfiguration {
+
+        @Bean
+        WebServerFactoryCustomizer<ConfigurableTomcatWebServerFactory> clientCertificateMapperPeerAddressCustomizer(ClientCertificateMapperProperties properties) {
+            return factory -> {
+                if (!properties.getTrustedProxies().isEmpty()) {
+                    factory.addEngineValves(new PeerAddressValve());
+                }
+            };
+        }
+
+    }
+
+    @ConditionalOnClass({Valve.class, ConfigurableTomcatWebServerFactory.class})
+    @ConditionalOnProperty(prefix = "cloudfoundry.client-certificate-mapper", name = "tomcat-valve", havingValue = "true")
+    @Configuration
+    static class TomcatValveConfiguration {
+
+        @Bean
+        WebServerFactoryCustomizer<ConfigurableTomcatWebServerFactory> clientCertificateMapperValveCustomizer(ClientCertificateEngine engine) {
+            return factory -> factory.addEngineValves(new ClientCertificateMapperValve(engine));
+        }
+
+    }
+
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.javax;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.util.Enumeration;
+import org.cloudfoundry.router.core.InstanceIdentity;
+
+/**
+ * An {@link HttpServletRequestWrapper} that defers mapping the {@code X-Forwarded-Client-Cert} header until the {@code javax.servlet.request.X509Certificate}
+ * attribute, or the {@link InstanceIdentity#ATTRIBUTE} attribute, is first read, so that requests that never read them never pay for parsing.  The attribute
+ * names are those the request would have had if the header had been mapped eagerly.
+ */
+final class LazyClientCertificateRequest extends HttpServletRequestWrapper {
+
+    private final ClientCertificateMapper mapper;
+
+    private boolean mapped;
+
+    LazyClientCertificateRequest(HttpServletRequest request, ClientCertificateMapper mapper) {
+        super(request);
+        this.mapper = mapper;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        if (isMapped(name)) {
+            map();
+        }
+
+        return super.getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        map();
+        return super.getAttributeNames();
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        if (isMapped(name)) {
+            this.mapped = true;
+        }
+
+        super.removeAttribute(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object o) {
+        if (isMapped(name)) {
+            this.mapped = true;
+        }
+
+        super.setAttribute(name, o);
+    }
+
+    private boolean isMapped(String name) {
+        return ClientCertificateMapper.ATTRIBUTE.equals(name) || InstanceIdentity.ATTRIBUTE.equals(name);
+    }
+
+    private void map() {
+        if (!this.mapped) {
+            this.mapped = true;
+            this.mapper.mapCertificates((HttpServletRequest) getRequest());
+        }
+    }
+
+}
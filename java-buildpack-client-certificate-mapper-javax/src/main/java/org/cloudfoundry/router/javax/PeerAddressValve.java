@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.javax;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import org.apache.catalina.Valve;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+/**
+ * A Tomcat {@link Valve} that publishes the address of the connection's peer as the {@link ClientCertificateMapper#PEER_ADDRESS} attribute, so that
+ * {@link ClientCertificateMapper} checks trusted proxies against it rather than against the remote address.  Tomcat's {@code RemoteIpValve}, which Spring
+ * Boot installs when forwarded headers are used, and Spring's {@code ForwardedHeaderFilter} both replace the remote address with the client address from
+ * {@code X-Forwarded-For}, but neither changes the peer address, so the valve may run anywhere in the engine's pipeline.
+ */
+final class PeerAddressValve extends ValveBase {
+
+    PeerAddressValve() {
+        super(true);
+    }
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        request.setAttribute(ClientCertificateMapper.PEER_ADDRESS, request.getPeerAddr());
+        getNext().invoke(request, response);
+    }
+
+}
@@ -16,21 +16,26 @@
 
 package org.cloudfoundry.router.javax;
 
+import org.cloudfoundry.router.core.ClientCertificateEngine;
+import org.cloudfoundry.router.core.InstanceIdentity;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockFilterChain;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.filter.ForwardedHeaderFilter;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.ServletException;
 import java.io.IOException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public final class ClientCertificateMapperTest {
 
-    private static final String CERTIFICATE_1 = "" +
+    static final String CERTIFICATE_1 = "" +
         "MIIDLTCCAhWgAwIBAgIkMDg3ZjVmZGMtOThkNy00MGMwLTY0ZDMtZmQ5NWFmODMx" +
         "OThkMA0GCSqGSIb3DQEBCwUAMBoxGDAWBgNVBAMMD2NyZWRodWJDbGllbnRDQTAe" +
         "Fw0xNzA1MDIwMDQ5MzFaFw0xNzA1MDMwMDQ5MzFaMGIxMTAvBgNVBAsTKGFwcDoy" +
@@ -50,7 +55,7 @@ public final class ClientCertificateMapperTest {
         "XcqQm8pYsDxi+HTGS6an78sHqrvU5uQJq2MW8o6iBJR80bFgWSl7GTqK3Xz5iTxU" +
         "Ew==";
 
-    private static final String CERTIFICATE_2 = "" +
+    static final String CERTIFICATE_2 = "" +
         "MIIC1TCCAb2gAwIBAgIUL3dmX9jNj2XqQaXv9noNfU84VoowDQYJKoZIhvcNAQEL" +
         "BQAwGjEYMBYGA1UEAwwPY3JlZGh1YkNsaWVudENBMB4XDTE3MDMzMDE5MTg0NVoX" +
         "DTE4MDMzMDE5MTg0NVowGjEYMBYGA1UEAwwPY3JlZGh1YkNsaWVudENBMIIBIjAN" +
@@ -68,7 +73,7 @@ public final class ClientCertificateMapperTest {
         "OeiChAJVyknz/Mu1KmQxoZ43JfCyUIdtT5oE7CWIJt3qVwJYLgykuYV8vXEnIALB" +
         "p/ob7SaWTJJO";
 
-    private static final String NGINX_ESCAPED_CERT = "" +
+    static final String NGINX_ESCAPED_CERT = "" +
         "%2D%2D%2D%2D%2DBEGIN%20CERTIFICATE%2D%2D%2D%2D%2D%0D%0AMIIDLTCCA" +
         "hWgAwIBAgIkMDg3ZjVmZGMtOThkNy00MGMwLTY0ZDMtZmQ5NWFmODMx%0D%0AOTh" +
         "kMA0GCSqGSIb3DQEBCwUAMBoxGDAWBgNVBAMMD2NyZWRodWJDbGllbnRDQTAe%0D" +
@@ -102,7 +107,23 @@ public final class ClientCertificateMapperTest {
     private final MockHttpServletResponse response = new MockHttpServletResponse();
 
     public ClientCertificateMapperTest() throws CertificateException {
-        this.mapper = new ClientCertificateMapper();
+        this.mapper = new ClientCertificateMapper(ClientCertificateEngine.builder().build(), false);
+    }
+
+    @Test
+    public void cachedHeader() throws IOException, ServletException {
+        this.request.addHeader(ClientCertificateMapper.HEADER, String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2));
+
+        this.mapper.doFilter(this.request, this.response, this.filterChain);
+        X509Certificate[] first = (X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE);
+
+        MockHttpServletRequest secondRequest = new MockHttpServletRequest();
+        secondRequest.addHeader(ClientCertificateMapper.HEADER, String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2));
+        this.mapper.doFilter(secondRequest, this.response, new MockFilterChain());
+        X509Certificate[] second = (X509Certificate[]) secondRequest.getAttribute(ClientCertificateMapper.ATTRIBUTE);
+
+        assertThat(second).isNotSameAs(first).containsExactly(first);
+        assertThat(this.mapper.getEngine().getChainCache().hitCount()).isEqualTo(1);
     }
 
     @Test
@@ -115,6 +136,44 @@ public final class ClientCertificateMapperTest {
         assertThat(this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).isNull();
     }
 
+    @Test
+    public void forgedForwardedFor() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapper mapper = new ClientCertificateMapper(ClientCertificateEngine.builder().trustedProxies(Collections.singletonList("10.0.0.0/8")).build(), false);
+        this.request.setAttribute(ClientCertificateMapper.PEER_ADDRESS, "192.168.1.1");
+        this.request.setRemoteAddr("192.168.1.1");
+        this.request.addHeader("X-Forwarded-For", "10.9.9.9");
+        this.request.addHeader(ClientCertificateMapper.HEADER, CERTIFICATE_1);
+
+        new ForwardedHeaderFilter().doFilter(this.request, this.response, (request, response) -> mapper.doFilter(request, response, this.filterChain));
+
+        assertThat(this.filterChain.getRequest().getRemoteAddr()).isEqualTo("10.9.9.9");
+        assertThat(this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).isNull();
+    }
+
+    @Test
+    public void forwardedHeaderFilter() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapper mapper = new ClientCertificateMapper(ClientCertificateEngine.builder().trustedProxies(Collections.singletonList("10.0.0.0/8")).build(), false);
+        this.request.setAttribute(ClientCertificateMapper.PEER_ADDRESS, "10.1.2.3");
+        this.request.setRemoteAddr("10.1.2.3");
+        this.request.addHeader("X-Forwarded-For", "203.0.113.7");
+        this.request.addHeader(ClientCertificateMapper.HEADER, CERTIFICATE_1);
+
+        new ForwardedHeaderFilter().doFilter(this.request, this.response, (request, response) -> mapper.doFilter(request, response, this.filterChain));
+
+        assertThat(this.filterChain.getRequest().getRemoteAddr()).isEqualTo("203.0.113.7");
+        assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(1);
+    }
+
+    @Test
+    public void instanceIdentity() throws IOException, ServletException {
+        this.request.addHeader(ClientCertificateMapper.HEADER, String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2));
+
+        this.mapper.doFilter(this.request, this.response, this.filterChain);
+
+        InstanceIdentity identity = (InstanceIdentity) this.request.getAttribute(InstanceIdentity.ATTRIBUTE);
+        assertThat(identity.getInstanceId()).isEqualTo("087f5fdc-98d7-40c0-64d3-fd95af83198d");
+    }
+
     @Test
     public void invalidHeader() throws IOException, ServletException {
         this.request.addHeader(ClientCertificateMapper.HEADER, "Invalid Header Value");
@@ -146,6 +205,81 @@ public final class ClientCertificateMapperTest {
         assertThat(this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).isNull();
     }
 
+    @Test
+    public void lazyHeader() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapper mapper = new ClientCertificateMapper(ClientCertificateEngine.builder().cacheMaximumSize(0).build(), true);
+        this.request.addHeader(ClientCertificateMapper.HEADER, String.format("%s,%s", CERTIFICATE_1, CERTIFICATE_2));
+
+        mapper.doFilter(this.request, this.response, this.filterChain);
+
+        assertThat(this.filterChain.getRequest()).isInstanceOf(LazyClientCertificateRequest.class);
+        assertThat(this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).isNull();
+        assertThat((X509Certificate[]) this.filterChain.getRequest().getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(2);
+        assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(2);
+    }
+
+    @Test
+    public void lazyHeaderAttributeNames() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapper mapper = new ClientCertificateMapper(ClientCertificateEngine.builder().cacheMaximumSize(0).build(), true);
+        this.request.addHeader(ClientCertificateMapper.HEADER, CERTIFICATE_1);
+
+        mapper.doFilter(this.request, this.response, this.filterChain);
+
+        assertThat(Collections.list(this.filterChain.getRequest().getAttributeNames())).contains(ClientCertificateMapper.ATTRIBUTE);
+    }
+
+    @Test
+    public void lazyHeaderInstanceIdentity() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapper mapper = new ClientCertificateMapper(ClientCertificateEngine.builder().cacheMaximumSize(0).build(), true);
+        this.request.addHeader(ClientCertificateMapper.HEADER, CERTIFICATE_1);
+
+        mapper.doFilter(this.request, this.response, this.filterChain);
+
+        assertThat(this.filterChain.getRequest().getAttribute(InstanceIdentity.ATTRIBUTE)).isInstanceOf(InstanceIdentity.class);
+    }
+
+    @Test
+    public void lazyHeaderRedispatched() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapper mapper = new ClientCertificateMapper(ClientCertificateEngine.builder().build(), true);
+        this.request.addHeader(ClientCertificateMapper.HEADER, CERTIFICATE_1);
+
+        mapper.doFilter(this.request, this.response, this.filterChain);
+        this.request.setDispatcherType(DispatcherType.ERROR);
+        MockFilterChain errorChain = new MockFilterChain();
+        mapper.doFilter(this.request, this.response, errorChain);
+
+        assertThat(errorChain.getRequest()).isInstanceOf(LazyClientCertificateRequest.class);
+        assertThat((X509Certificate[]) errorChain.getRequest().getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(1);
+
+        this.request.setDispatcherType(DispatcherType.ASYNC);
+        MockFilterChain asyncChain = new MockFilterChain();
+        mapper.doFilter(this.request, this.response, asyncChain);
+
+        assertThat(asyncChain.getRequest()).isSameAs(this.request);
+        assertThat(mapper.getEngine().getChainCache().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void lazyHeaderReplaced() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapper mapper = new ClientCertificateMapper(ClientCertificateEngine.builder().cacheMaximumSize(0).build(), true);
+        this.request.addHeader(ClientCertificateMapper.HEADER, CERTIFICATE_1);
+
+        mapper.doFilter(this.request, this.response, this.filterChain);
+        this.filterChain.getRequest().removeAttribute(ClientCertificateMapper.ATTRIBUTE);
+
+        assertThat(this.filterChain.getRequest().getAttribute(ClientCertificateMapper.ATTRIBUTE)).isNull();
+    }
+
+    @Test
+    public void lazyNoHeader() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapper mapper = new ClientCertificateMapper(ClientCertificateEngine.builder().cacheMaximumSize(0).build(), true);
+
+        mapper.doFilter(this.request, this.response, this.filterChain);
+
+        assertThat(this.filterChain.getRequest()).isSameAs(this.request);
+        assertThat(this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).isNull();
+    }
+
     @Test
     public void multipleHeaders() throws IOException, ServletException {
         this.request.addHeader(ClientCertificateMapper.HEADER, CERTIFICATE_1);
@@ -167,6 +301,16 @@ public final class ClientCertificateMapperTest {
         assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(2);
     }
 
+    @Test
+    public void multipleInOneHeaderWithWhitespace() throws IOException, ServletException {
+        this.request.addHeader(ClientCertificateMapper.HEADER, String.format("%s, %s", CERTIFICATE_1, CERTIFICATE_2));
+
+        this.mapper.doFilter(this.request, this.response, this.filterChain);
+
+        assertThat(this.filterChain.getRequest()).isNotNull();
+        assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(2);
+    }
+
     @Test
     public void nginxHeader() throws IOException, ServletException {
 
@@ -186,4 +330,55 @@ public final class ClientCertificateMapperTest {
         assertThat(this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).isNull();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void redispatched() throws IOException, ServletException {
+        this.request.addHeader(ClientCertificateMapper.HEADER, CERTIFICATE_1);
+
+        this.mapper.doFilter(this.request, this.response, this.filterChain);
+        X509Certificate[] first = (X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE);
+
+        for (DispatcherType dispatcherType : new DispatcherType[]{ DispatcherType.FORWARD, DispatcherType.INCLUDE, DispatcherType.ERROR, DispatcherType.ASYNC }) {
+            this.request.setDispatcherType(dispatcherType);
+            this.mapper.doFilter(this.request, this.response, new MockFilterChain());
+        }
+
+        assertThat(this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).isSameAs(first);
+        assertThat(this.mapper.getEngine().getChainCache().hitCount()).isZero();
+        assertThat(this.mapper.getEngine().getChainCache().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void pemHeader() throws IOException, ServletException {
+        this.request.addHeader(ClientCertificateMapper.HEADER, String.format("-----BEGIN CERTIFICATE----- %s -----END CERTIFICATE-----", CERTIFICATE_1));
+
+        this.mapper.doFilter(this.request, this.response, this.filterChain);
+
+        assertThat(this.filterChain.getRequest()).isNotNull();
+        assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(1);
+    }
+
+    @Test
+    public void trustedProxy() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapper mapper = new ClientCertificateMapper(ClientCertificateEngine.builder().trustedProxies(Collections.singletonList("10.0.0.0/8")).build(), false);
+        this.request.setRemoteAddr("10.1.2.3");
+        this.request.addHeader(ClientCertificateMapper.HEADER, CERTIFICATE_1);
+
+        mapper.doFilter(this.request, this.response, this.filterChain);
+
+        assertThat((X509Certificate[]) this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).hasSize(1);
+    }
+
+    @Test
+    public void untrustedProxy() throws CertificateException, IOException, ServletException {
+        ClientCertificateMapper mapper = new ClientCertificateMapper(ClientCertificateEngine.builder().trustedProxies(Collections.singletonList("10.0.0.0/8")).build(), false);
+        this.request.setRemoteAddr("192.168.1.1");
+        this.request.addHeader(ClientCertificateMapper.HEADER, CERTIFICATE_1);
+
+        mapper.doFilter(this.request, this.response, this.filterChain);
+
+        assertThat(this.filterChain.getRequest()).isNotNull();
+        assertThat(this.request.getAttribute(ClientCertificateMapper.ATTRIBUTE)).isNull();
+        assertThat(mapper.getEngine().getCertificateCache().missCount()).isZero();
+    }
+
+}
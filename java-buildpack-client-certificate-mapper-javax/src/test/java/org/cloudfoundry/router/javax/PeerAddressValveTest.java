@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.javax;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.Request;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class PeerAddressValveTest {
+
+    private final org.apache.coyote.Request coyoteRequest = new org.apache.coyote.Request();
+
+    private final Request request = new Request(new Connector());
+
+    public PeerAddressValveTest() {
+        this.request.setCoyoteRequest(this.coyoteRequest);
+    }
+
+    @Test
+    public void peerAddress() throws IOException, ServletException {
+        AtomicReference<String> remoteAddr = new AtomicReference<>();
+        this.coyoteRequest.peerAddr().setString("10.1.2.3");
+        this.coyoteRequest.remoteAddr().setString("10.1.2.3");
+        this.coyoteRequest.getMimeHeaders().addValue("X-Forwarded-For").setString("203.0.113.7");
+
+        ClientCertificateMapperValveTest.remoteIpValve(new PeerAddressValve(), remoteAddr).invoke(this.request, null);
+
+        assertThat(remoteAddr).hasValue("203.0.113.7");
+        assertThat(this.request.getAttribute(ClientCertificateMapper.PEER_ADDRESS)).isEqualTo("10.1.2.3");
+    }
+
+}
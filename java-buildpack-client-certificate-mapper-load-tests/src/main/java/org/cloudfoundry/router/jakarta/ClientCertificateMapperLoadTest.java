@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the mapper per request in embedded servlet containers.  For each container and registration, an application is started on a loopback
+ * port and driven by {@link Driver} with headers from a generated {@link Corpus}, and throughput and latency percentiles are reported against the same
+ * container with no mapper registered.
+ *
+ * <p>Options are given as {@code name=value} arguments:</p>
+ * <ul>
+ *     <li>{@code containers}: comma-separated {@link Container}s, default all</li>
+ *     <li>{@code registrations}: comma-separated {@link Registration}s, default all</li>
+ *     <li>{@code concurrency}: number of requests in flight, default twice the number of processors</li>
+ *     <li>{@code duration}: seconds to record for, default {@code 10}</li>
+ *     <li>{@code warm-up}: seconds to run for before recording, default {@code 5}</li>
+ *     <li>{@code corpus}: number of distinct certificates, default {@code 16}</li>
+ *     <li>{@code shapes}: comma-separated {@link Shape}s, default all</li>
+ * </ul>
+ */
+public final class ClientCertificateMapperLoadTest {
+
+    private static final String FORMAT = "%-10s %-20s %12s %10s %10s %10s %10s %12s %9s %8s%n";
+
+    private ClientCertificateMapperLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+
+        Set<Container> containers = values(Container.class, options.remove("containers"));
+        Set<Registration> registrations = values(Registration.class, options.remove("registrations"));
+        int concurrency = Integer.parseInt(remove(options, "concurrency", Integer.toString(2 * Runtime.getRuntime().availableProcessors())));
+        long duration = Long.parseLong(remove(options, "duration", "10"));
+        long warmUp = Long.parseLong(remove(options, "warm-up", "5"));
+        int size = Integer.parseInt(remove(options, "corpus", "16"));
+        Set<Shape> shapes = values(Shape.class, options.remove("shapes"));
+
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException(String.format("Unknown options %s", options.keySet()));
+        }
+
+        Corpus corpus = Corpus.generate(size, shapes);
+        System.out.printf("%d headers in shapes %s, %d requests in flight, %ds warm-up, %ds recorded%n%n", corpus.size(), shapes, concurrency, warmUp, duration);
+        System.out.printf(FORMAT, "Container", "Registration", "Requests/s", "Mean (µs)", "p50 (µs)", "p99 (µs)", "p99.9 (µs)", "Δ Mean (µs)", "Mapped", "Errors");
+
+        for (Container container : containers) {
+            Driver.Result baseline = null;
+
+            for (Registration registration : registrations) {
+                Driver.Result result;
+
+                try (ConfigurableApplicationContext context = registration.start(container)) {
+                    int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                    result = new Driver(port, concurrency, corpus).run(warmUp, duration, TimeUnit.SECONDS);
+                }
+
+                if (registration == Registration.NONE) {
+                    baseline = result;
+                }
+
+                System.out.printf(FORMAT, container, registration, String.format("%.0f", result.getRequestsPerSecond()), String.format("%.1f", result.getMean()),
+                    String.format("%.1f", result.getP50()), String.format("%.1f", result.getP99()), String.format("%.1f", result.getP999()),
+                    baseline == null ? "" : String.format("%+.1f", result.getMean() - baseline.getMean()), String.format("%.1f%%", 100 * result.getMapped()),
+                    result.getErrors());
+            }
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index == -1) {
+                throw new IllegalArgumentException(String.format("Option %s is not of the form name=value", arg));
+            }
+
+            options.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+
+        return options;
+    }
+
+    private static String remove(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private static <T extends Enum<T>> Set<T> values(Class<T> type, String value) {
+        if (value == null) {
+            return EnumSet.allOf(type);
+        }
+
+        List<T> values = new ArrayList<>();
+        for (String name : value.split("\\s*,\\s*")) {
+            values.add(Enum.valueOf(type, name.trim().toUpperCase().replace('-', '_')));
+        }
+
+        return EnumSet.copyOf(values);
+    }
+
+}
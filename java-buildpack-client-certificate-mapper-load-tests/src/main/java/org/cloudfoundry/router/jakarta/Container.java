@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import org.springframework.boot.jetty.servlet.JettyServletWebServerFactory;
+import org.springframework.boot.tomcat.servlet.TomcatServletWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The embedded servlet containers started by the load test, each listening on an ephemeral loopback port.  Undertow is not among them, as Spring Boot no
+ * longer supports it.
+ */
+enum Container {
+
+    JETTY(JettyConfiguration.class),
+
+    TOMCAT(TomcatConfiguration.class);
+
+    private final Class<?> configuration;
+
+    Container(Class<?> configuration) {
+        this.configuration = configuration;
+    }
+
+    Class<?> getConfiguration() {
+        return this.configuration;
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class JettyConfiguration {
+
+        @Bean
+        JettyServletWebServerFactory jettyServletWebServerFactory() {
+            return new JettyServletWebServerFactory(0);
+        }
+
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class TomcatConfiguration {
+
+        @Bean
+        TomcatServletWebServerFactory tomcatServletWebServerFactory() {
+            return new TomcatServletWebServerFactory(0);
+        }
+
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * The {@code X-Forwarded-Client-Cert} headers sent by the load test.  Distinct Cloud Foundry instance identity certificates, signed by a common CA, are
+ * generated with {@code keytool}, so that no key material is checked in and the mapper sees as many distinct values as a busy route would, and each is
+ * presented in every requested {@link Shape}.
+ */
+final class Corpus {
+
+    private static final String KEYTOOL = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+
+    private final List<String[]> headers;
+
+    private Corpus(List<String[]> headers) {
+        this.headers = headers;
+    }
+
+    static Corpus generate(int size, Set<Shape> shapes) throws CertificateException, IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("client-certificate-mapper-load-test");
+
+        try {
+            keytool(directory, "-genkeypair", "-alias", "ca", "-dname", "CN=load-test-ca", "-ext", "bc:c");
+            byte[] ca = export(directory, "ca");
+
+            List<String[]> headers = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                String alias = String.format("leaf-%d", i);
+
+                keytool(directory, "-genkeypair", "-alias", alias, "-dname", String.format("CN=%s, OU=app:%s, OU=space:%s, OU=organization:%s",
+                    UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()));
+                keytool(directory, "-certreq", "-alias", alias, "-file", String.format("%s.csr", alias));
+                keytool(directory, "-gencert", "-alias", "ca", "-infile", String.format("%s.csr", alias), "-outfile", String.format("%s.pem", alias), "-rfc");
+                byte[] leaf = parse(directory.resolve(String.format("%s.pem", alias)));
+
+                for (Shape shape : shapes) {
+                    headers.add(shape.getHeaders(leaf, ca));
+                }
+            }
+
+            // Interleaved, so that consecutive requests present different shapes and certificates
+            Collections.shuffle(headers);
+            return new Corpus(headers);
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    String[] get(long index) {
+        return this.headers.get((int) (index % this.headers.size()));
+    }
+
+    int size() {
+        return this.headers.size();
+    }
+
+    private static byte[] export(Path directory, String alias) throws CertificateException, IOException, InterruptedException {
+        keytool(directory, "-exportcert", "-alias", alias, "-file", String.format("%s.pem", alias), "-rfc");
+        return parse(directory.resolve(String.format("%s.pem", alias)));
+    }
+
+    private static void keytool(Path directory, String... arguments) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(KEYTOOL);
+        command.addAll(Arrays.asList(arguments));
+        command.addAll(Arrays.asList("-keyalg", "RSA", "-keysize", "2048", "-validity", "2", "-keystore", "corpus.p12", "-storetype", "PKCS12",
+            "-storepass", "load-test"));
+
+        Process process = new ProcessBuilder(command)
+            .directory(directory.toFile())
+            .redirectErrorStream(true)
+            .start();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            byte[] buffer = new byte[4096];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                output.write(buffer, 0, n);
+            }
+        }
+
+        if (process.waitFor() != 0) {
+            throw new IOException(String.format("keytool %s failed: %s", arguments[0], output.toString(Charset.defaultCharset().name())));
+        }
+    }
+
+    private static byte[] parse(Path pem) throws CertificateException, IOException {
+        try (InputStream in = Files.newInputStream(pem)) {
+            return CertificateFactory.getInstance("X.509").generateCertificate(in).getEncoded();
+        }
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A closed-loop HTTP load generator.  Each worker thread sends a request over a kept-alive loopback connection, waits for the response and sends the next, so
+ * the number of requests in flight is always the concurrency and latencies are not distorted by a queue in the driver.
+ */
+final class Driver {
+
+    private final int concurrency;
+
+    private final Corpus corpus;
+
+    private final URL url;
+
+    Driver(int port, int concurrency, Corpus corpus) throws IOException {
+        this.concurrency = concurrency;
+        this.corpus = corpus;
+        this.url = new URL(String.format("http://127.0.0.1:%d/", port));
+
+        // HttpURLConnection keeps at most this many idle connections per destination alive
+        System.setProperty("http.maxConnections", Integer.toString(concurrency));
+    }
+
+    Result run(long warmUp, long duration, TimeUnit unit) throws InterruptedException {
+        AtomicLong sequence = new AtomicLong();
+        long start = System.nanoTime();
+        long recording = start + unit.toNanos(warmUp);
+        long end = recording + unit.toNanos(duration);
+
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < this.concurrency; i++) {
+            Worker worker = new Worker(sequence, recording, end);
+            workers.add(worker);
+            worker.start();
+        }
+
+        for (Worker worker : workers) {
+            worker.join();
+        }
+
+        return Result.of(workers, unit.toNanos(duration));
+    }
+
+    static final class Result {
+
+        private final long errors;
+
+        private final double mapped;
+
+        private final double mean;
+
+        private final double p50;
+
+        private final double p99;
+
+        private final double p999;
+
+        private final double requestsPerSecond;
+
+        private Result(long errors, double mapped, double mean, double p50, double p99, double p999, double requestsPerSecond) {
+            this.errors = errors;
+            this.mapped = mapped;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.requestsPerSecond = requestsPerSecond;
+        }
+
+        // Number of requests that failed or were not answered with 200
+        long getErrors() {
+            return this.errors;
+        }
+
+        // Fraction of successful requests that were given certificates
+        double getMapped() {
+            return this.mapped;
+        }
+
+        // Latencies, in microseconds
+        double getMean() {
+            return this.mean;
+        }
+
+        double getP50() {
+            return this.p50;
+        }
+
+        double getP99() {
+            return this.p99;
+        }
+
+        double getP999() {
+            return this.p999;
+        }
+
+        double getRequestsPerSecond() {
+            return this.requestsPerSecond;
+        }
+
+        private static Result of(List<Worker> workers, long duration) {
+            int count = 0;
+            long errors = 0;
+            long mapped = 0;
+
+            for (Worker worker : workers) {
+                count += worker.count;
+                errors += worker.errors;
+                mapped += worker.mapped;
+            }
+
+            long[] latencies = new long[count];
+            long total = 0;
+            int position = 0;
+
+            for (Worker worker : workers) {
+                System.arraycopy(worker.latencies, 0, latencies, position, worker.count);
+                position += worker.count;
+            }
+
+            for (long latency : latencies) {
+                total += latency;
+            }
+
+            Arrays.sort(latencies);
+
+            return new Result(errors, count == 0 ? 0 : (double) mapped / count, count == 0 ? 0 : micros(total) / count, percentile(latencies, 0.5),
+                percentile(latencies, 0.99), percentile(latencies, 0.999), count / (duration / 1e9));
+        }
+
+        private static double micros(long nanos) {
+            return nanos / 1e3;
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+
+            return micros(sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)]);
+        }
+
+    }
+
+    private final class Worker extends Thread {
+
+        private final long end;
+
+        private final long recording;
+
+        private final AtomicLong sequence;
+
+        private int count;
+
+        private long errors;
+
+        private long[] latencies = new long[1024];
+
+        private long mapped;
+
+        private Worker(AtomicLong sequence, long recording, long end) {
+            super("load-test-driver");
+            this.sequence = sequence;
+            this.recording = recording;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[256];
+
+            for (long start = System.nanoTime(); start < this.end; start = System.nanoTime()) {
+                boolean certificates;
+
+                try {
+                    certificates = request(Driver.this.corpus.get(this.sequence.getAndIncrement()), buffer);
+                } catch (IOException e) {
+                    if (start >= this.recording) {
+                        this.errors++;
+                    }
+                    continue;
+                }
+
+                long latency = System.nanoTime() - start;
+                if (start < this.recording) {
+                    continue;
+                }
+
+                if (this.count == this.latencies.length) {
+                    this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+                }
+
+                this.latencies[this.count++] = latency;
+                if (certificates) {
+                    this.mapped++;
+                }
+            }
+        }
+
+        private boolean request(String[] headers, byte[] buffer) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) Driver.this.url.openConnection();
+
+            for (String header : headers) {
+                connection.addRequestProperty("X-Forwarded-Client-Cert", header);
+            }
+
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                try (InputStream in = connection.getErrorStream()) {
+                    drain(in, buffer);
+                }
+                throw new IOException(String.format("Unexpected status %d", connection.getResponseCode()));
+            }
+
+            // The body is read to the end, so that the connection is returned to the keep-alive cache
+            try (InputStream in = connection.getInputStream()) {
+                boolean certificates = in.read() == '1';
+                drain(in, buffer);
+                return certificates;
+            }
+        }
+
+        private void drain(InputStream in, byte[] buffer) throws IOException {
+            if (in != null) {
+                while (in.read(buffer) != -1) {
+                    // discard
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * The endpoint requested by the load test.  It does no work of its own beyond reporting whether the request was given certificates, so that the driver can
+ * confirm that the mapper ran and latency is dominated by the container and the mapper.
+ */
+@Configuration(proxyBeanMethods = false)
+class Endpoint {
+
+    @Bean
+    ServletRegistrationBean<CertificateServlet> certificateServlet() {
+        return new ServletRegistrationBean<>(new CertificateServlet(), "/");
+    }
+
+    static final class CertificateServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            response.setContentType("text/plain");
+            response.getWriter().write(request.getAttribute(ClientCertificateMapper.ATTRIBUTE) == null ? '0' : '1');
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.ServletContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The ways the load test registers the mapper: not at all, as a baseline, through {@link ClientCertificateMapperServletContainerInitializer}, as a WAR
+ * deployment would, and through {@link ClientCertificateMapperAutoConfiguration}, as a Spring Boot application would.
+ */
+enum Registration {
+
+    NONE,
+
+    INITIALIZER(InitializerConfiguration.class),
+
+    AUTO_CONFIGURATION(ClientCertificateMapperAutoConfiguration.class);
+
+    private final Class<?>[] configurations;
+
+    Registration(Class<?>... configurations) {
+        this.configurations = configurations;
+    }
+
+    ConfigurableApplicationContext start(Container container) {
+        return new SpringApplicationBuilder(container.getConfiguration(), Endpoint.class)
+            .sources(this.configurations)
+            .bannerMode(Banner.Mode.OFF)
+            .logStartupInfo(false)
+            .properties("logging.level.root=warn", "spring.main.cloud-platform=cloud_foundry")
+            .web(WebApplicationType.SERVLET)
+            .run();
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class InitializerConfiguration {
+
+        // Embedded containers do not run the ServletContainerInitializers on the classpath, so the initializer is run as a standalone container would run it
+        @Bean
+        ServletContextInitializer clientCertificateMapperServletContainerInitializer() {
+            return servletContext -> new ClientCertificateMapperServletContainerInitializer().onStartup(null, servletContext);
+        }
+
+    }
+
+}
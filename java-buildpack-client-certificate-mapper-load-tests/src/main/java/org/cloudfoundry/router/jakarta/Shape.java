@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.jakarta;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * The shapes in which the load test presents a leaf certificate and its CA in the {@code X-Forwarded-Client-Cert} header, one for each kind of proxy the
+ * mapper supports.
+ */
+enum Shape {
+
+    SINGLE {
+        @Override
+        String[] getHeaders(byte[] leaf, byte[] ca) {
+            return new String[]{ base64(leaf) };
+        }
+    },
+
+    CHAIN {
+        @Override
+        String[] getHeaders(byte[] leaf, byte[] ca) {
+            return new String[]{ String.format("%s,%s", base64(leaf), base64(ca)) };
+        }
+    },
+
+    MULTIPLE_HEADERS {
+        @Override
+        String[] getHeaders(byte[] leaf, byte[] ca) {
+            return new String[]{ base64(leaf), base64(ca) };
+        }
+    },
+
+    NGINX {
+        @Override
+        String[] getHeaders(byte[] leaf, byte[] ca) {
+            return new String[]{ escape(pem(leaf)) };
+        }
+    },
+
+    ENVOY {
+        @Override
+        String[] getHeaders(byte[] leaf, byte[] ca) {
+            return new String[]{ String.format("By=spiffe://cluster.local/ns/default/sa/load-test;Hash=%s;Cert=\"%s\";Chain=\"%s%s\"", sha256(leaf),
+                escape(pem(leaf)), escape(pem(leaf)), escape(pem(ca))) };
+        }
+    };
+
+    abstract String[] getHeaders(byte[] leaf, byte[] ca);
+
+    private static String base64(byte[] der) {
+        return Base64.getEncoder().encodeToString(der);
+    }
+
+    // Escapes everything but letters and digits, as nginx does for $ssl_client_escaped_cert
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                sb.append(c);
+            } else {
+                sb.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16))).append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String pem(byte[] der) {
+        return String.format("-----BEGIN CERTIFICATE-----\n%s\n-----END CERTIFICATE-----\n",
+            Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(der));
+    }
+
+    private static String sha256(byte[] der) {
+        try {
+            StringBuilder sb = new StringBuilder();
+
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(der)) {
+                sb.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
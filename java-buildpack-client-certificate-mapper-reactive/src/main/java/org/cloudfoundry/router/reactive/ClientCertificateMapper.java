@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.reactive;
+
+import org.cloudfoundry.router.core.ClientCertificateEngine;
+import org.cloudfoundry.router.core.InstanceIdentity;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.SslInfo;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.InetSocketAddress;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+/**
+ * A {@link WebFilter} that translates the {@code X-Forwarded-Client} HTTP header to the peer certificates of the request's {@link SslInfo} and to the
+ * {@code jakarta.servlet.request.X509Certificate} exchange attribute, the same attribute name as used by the Servlet mapper.  This implementation handles both
+ * multiple headers as well as the <a href=https://tools.ietf.org/html/rfc7230#section-3.2.2>RFC 7230</a> comma delimited equivalent.  Decoding, parsing and
+ * caching are delegated to a {@link ClientCertificateEngine}.  If the leaf certificate carries a Cloud Foundry instance identity, it is also published as the
+ * {@link InstanceIdentity#ATTRIBUTE} exchange attribute.  If trusted proxies are configured, the header of a request from any other peer is dropped before
+ * it is read.  The peer is the request's remote address, which must not have been rewritten from forwarded headers.  Headers already in its cache are
+ * mapped on the calling thread; anything that must be parsed is parsed on the {@link Schedulers#boundedElastic() bounded elastic} scheduler, where the
+ * engine may block, so that the event loop is never held up.
+ */
+final class ClientCertificateMapper implements WebFilter, Ordered {
+
+    static final String ATTRIBUTE = "jakarta.servlet.request.X509Certificate";
+
+    static final String HEADER = ClientCertificateEngine.HEADER;
+
+    private final ClientCertificateEngine engine;
+
+    ClientCertificateMapper() throws CertificateException {
+        this(ClientCertificateEngine.getDefault());
+    }
+
+    ClientCertificateMapper(ClientCertificateEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+
+        // The header of a peer other than a trusted proxy is dropped, unread, as though absent
+        String rawHeader = isTrustedProxy(request) ? getRawHeader(request) : null;
+
+        X509Certificate[] certificates = this.engine.getCachedCertificates(rawHeader);
+        if (certificates != null) {
+            return chain.filter(mapCertificates(exchange, certificates));
+        }
+
+        return Mono.fromCallable(() -> this.engine.map(rawHeader))
+            .subscribeOn(Schedulers.boundedElastic())
+            .map(parsed -> mapCertificates(exchange, parsed))
+            // Failures are reported, rate-limited and aggregated, by the engine
+            .onErrorResume(CertificateException.class, e -> Mono.just(exchange))
+            .flatMap(chain::filter);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    ClientCertificateEngine getEngine() {
+        return this.engine;
+    }
+
+    private String getRawHeader(ServerHttpRequest request) {
+        List<String> candidates = request.getHeaders().get(HEADER);
+
+        if (candidates == null || candidates.isEmpty()) {
+            return null;
+        } else if (candidates.size() == 1) {
+            return candidates.get(0);
+        } else {
+            return String.join(",", candidates);
+        }
+    }
+
+    private boolean isTrustedProxy(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        return this.engine.isTrustedProxy(remoteAddress == null ? null : remoteAddress.getAddress());
+    }
+
+    private ServerWebExchange mapCertificates(ServerWebExchange exchange, X509Certificate[] certificates) {
+        if (certificates.length == 0) {
+            return exchange;
+        }
+
+        exchange.getAttributes().put(ATTRIBUTE, certificates);
+
+        InstanceIdentity identity = this.engine.getInstanceIdentity(certificates[0]);
+        if (identity != null) {
+            exchange.getAttributes().put(InstanceIdentity.ATTRIBUTE, identity);
+        }
+
+        ServerHttpRequest request = exchange.getRequest().mutate()
+            .sslInfo(new ForwardedSslInfo(certificates))
+            .build();
+
+        return exchange.mutate()
+            .request(request)
+            .build();
+    }
+
+    private static final class ForwardedSslInfo implements SslInfo {
+
+        private final X509Certificate[] peerCertificates;
+
+        private ForwardedSslInfo(X509Certificate[] peerCertificates) {
+            this.peerCertificates = peerCertificates;
+        }
+
+        @Override
+        public X509Certificate[] getPeerCertificates() {
+            return this.peerCertificates;
+        }
+
+        @Override
+        public String getSessionId() {
+            return null;
+        }
+
+    }
+
+}
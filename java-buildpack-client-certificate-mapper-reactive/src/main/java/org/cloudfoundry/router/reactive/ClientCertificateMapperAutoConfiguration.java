@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.reactive;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.cloudfoundry.router.core.ClientCertificateEngine;
+import org.cloudfoundry.router.core.MappingListener;
+import org.cloudfoundry.router.core.MicrometerMappingListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnCloudPlatform;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.cloud.CloudPlatform;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.core.env.Environment;
+import org.springframework.web.server.WebFilter;
+
+import java.security.cert.CertificateException;
+
+@AutoConfigureAfter(name = {
+    "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration",
+    "org.springframework.boot.micrometer.metrics.autoconfigure.CompositeMeterRegistryAutoConfiguration"
+})
+@ConditionalOnClass(WebFilter.class)
+@ConditionalOnCloudPlatform(CloudPlatform.CLOUD_FOUNDRY)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Configuration
+@EnableConfigurationProperties(ClientCertificateMapperProperties.class)
+@ImportRuntimeHints(ClientCertificateMapperRuntimeHints.class)
+public class ClientCertificateMapperAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    ClientCertificateEngine clientCertificateEngine(ClientCertificateMapperProperties properties, ObjectProvider<MappingListener> listener) throws CertificateException {
+        ClientCertificateMapperProperties.Cache cache = properties.getCache();
+        ClientCertificateMapperProperties.Limits limits = properties.getLimits();
+        ClientCertificateMapperProperties.NegativeCache negativeCache = properties.getNegativeCache();
+        ClientCertificateMapperProperties.Validation validation = properties.getValidation();
+
+        return ClientCertificateEngine.builder()
+            .cacheFile(cache.getFile())
+            .cacheFileMaximumSize(Math.toIntExact(cache.getFileMaximumSize().toBytes()))
+            .cacheMaximumSize(cache.getMaximumSize())
+            .cacheOffHeapCapacity(Math.toIntExact(cache.getOffHeapCapacity().toBytes()))
+            .cacheTimeToLive(cache.getTimeToLive())
+            .diagnosticsInterval(properties.getDiagnosticsInterval())
+            .listener(listener.getIfAvailable(() -> MappingListener.NONE))
+            .maximumCertificateSize(limits.getMaximumCertificateSize())
+            .maximumChainLength(limits.getMaximumChainLength())
+            .maximumHeaderSize(limits.getMaximumHeaderSize())
+            .negativeCacheMaximumSize(negativeCache.getMaximumSize())
+            .negativeCacheTimeToLive(negativeCache.getTimeToLive())
+            .trustStore(validation.getTrustStore())
+            .trustStoreCheckInterval(validation.getCheckInterval())
+            .trustedProxies(properties.getTrustedProxies())
+            .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "cloudfoundry.client-certificate-mapper.warm-up", name = "enabled", havingValue = "true")
+    SmartInitializingSingleton clientCertificateEngineWarmUp(ClientCertificateEngine engine, ClientCertificateMapperProperties properties) {
+        return () -> engine.warmUp(properties.getWarmUp().getIterations());
+    }
+
+    @Bean
+    ClientCertificateMapper reactiveClientCertificateMapper(ClientCertificateEngine engine, ClientCertificateMapperProperties properties, Environment environment) {
+        if (!properties.getTrustedProxies().isEmpty() && !"none".equalsIgnoreCase(environment.getProperty("server.forward-headers-strategy", "native"))) {
+            throw new IllegalStateException("cloudfoundry.client-certificate-mapper.trusted-proxies requires server.forward-headers-strategy=none, so that the " +
+                "remote address is not rewritten from forwarded headers");
+        }
+
+        return new ClientCertificateMapper(engine);
+    }
+
+    @ConditionalOnClass(MeterRegistry.class)
+    @Configuration
+    static class MetricsConfiguration {
+
+        @Bean
+        @ConditionalOnBean(MeterRegistry.class)
+        @ConditionalOnMissingBean
+        MappingListener clientCertificateMappingListener(MeterRegistry registry) {
+            return new MicrometerMappingListener(registry);
+        }
+
+    }
+
+}
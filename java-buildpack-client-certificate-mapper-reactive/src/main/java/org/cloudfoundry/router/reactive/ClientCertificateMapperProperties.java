@@ -0,0 +1,299 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.reactive;
+
+import org.cloudfoundry.router.core.ClientCertificateEngine;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Configuration properties for the {@link ClientCertificateMapper}.
+ */
+@ConfigurationProperties("cloudfoundry.client-certificate-mapper")
+public class ClientCertificateMapperProperties {
+
+    private final Cache cache = new Cache();
+
+    private final Limits limits = new Limits();
+
+    private final NegativeCache negativeCache = new NegativeCache();
+
+    private final Validation validation = new Validation();
+
+    private final WarmUp warmUp = new WarmUp();
+
+    /**
+     * Interval between aggregated warnings about headers that cannot be mapped.  Zero warns about every failure.
+     */
+    private Duration diagnosticsInterval = ClientCertificateEngine.DEFAULT_DIAGNOSTICS_INTERVAL;
+
+    /**
+     * Address ranges, in CIDR notation, of the proxies that may set the header.  The header of a request from any other peer is dropped before it is decoded.
+     * Requires {@code server.forward-headers-strategy} to be {@code none}, so that the peer's address is not rewritten from forwarded headers.  Every peer is
+     * trusted if empty.
+     */
+    private List<String> trustedProxies = Collections.emptyList();
+
+    public Cache getCache() {
+        return this.cache;
+    }
+
+    public Duration getDiagnosticsInterval() {
+        return this.diagnosticsInterval;
+    }
+
+    public Limits getLimits() {
+        return this.limits;
+    }
+
+    public NegativeCache getNegativeCache() {
+        return this.negativeCache;
+    }
+
+    public List<String> getTrustedProxies() {
+        return this.trustedProxies;
+    }
+
+    public Validation getValidation() {
+        return this.validation;
+    }
+
+    public WarmUp getWarmUp() {
+        return this.warmUp;
+    }
+
+    public void setDiagnosticsInterval(Duration diagnosticsInterval) {
+        this.diagnosticsInterval = diagnosticsInterval;
+    }
+
+    public void setTrustedProxies(List<String> trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    public static class Cache {
+
+        /**
+         * File to which parsed certificates are appended, and from which they are loaded at startup, so that a restarted instance starts with a warm cache.
+         * Persistence is disabled if not set.
+         */
+        private Path file;
+
+        /**
+         * Maximum size of the cache file.  Certificates are no longer appended once it is reached, and it is compacted at the next startup.
+         */
+        private DataSize fileMaximumSize = DataSize.ofBytes(ClientCertificateEngine.DEFAULT_CACHE_FILE_MAXIMUM_SIZE);
+
+        /**
+         * Maximum number of parsed certificates, and of parsed certificate chains, to cache.  A value of zero disables caching.
+         */
+        private int maximumSize = ClientCertificateEngine.DEFAULT_CACHE_MAXIMUM_SIZE;
+
+        /**
+         * Capacity of an off-heap tier holding the DER of certificates evicted from the heap, so that they are parsed again without being decoded.  A value
+         * of zero disables the tier.
+         */
+        private DataSize offHeapCapacity = DataSize.ofBytes(ClientCertificateEngine.DEFAULT_CACHE_OFF_HEAP_CAPACITY);
+
+        /**
+         * Time after which a cached certificate is parsed again.
+         */
+        private Duration timeToLive = ClientCertificateEngine.DEFAULT_CACHE_TIME_TO_LIVE;
+
+        public Path getFile() {
+            return this.file;
+        }
+
+        public void setFile(Path file) {
+            this.file = file;
+        }
+
+        public DataSize getFileMaximumSize() {
+            return this.fileMaximumSize;
+        }
+
+        public void setFileMaximumSize(DataSize fileMaximumSize) {
+            this.fileMaximumSize = fileMaximumSize;
+        }
+
+        public int getMaximumSize() {
+            return this.maximumSize;
+        }
+
+        public void setMaximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public DataSize getOffHeapCapacity() {
+            return this.offHeapCapacity;
+        }
+
+        public void setOffHeapCapacity(DataSize offHeapCapacity) {
+            this.offHeapCapacity = offHeapCapacity;
+        }
+
+        public Duration getTimeToLive() {
+            return this.timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+    }
+
+    public static class Limits {
+
+        /**
+         * Maximum size, in characters, of an encoded certificate.  Larger certificates are rejected before being decoded.  A value of zero disables the limit.
+         */
+        private int maximumCertificateSize = ClientCertificateEngine.DEFAULT_MAXIMUM_CERTIFICATE_SIZE;
+
+        /**
+         * Maximum number of certificates in a header.  Headers with more are rejected before being decoded.  A value of zero disables the limit.
+         */
+        private int maximumChainLength = ClientCertificateEngine.DEFAULT_MAXIMUM_CHAIN_LENGTH;
+
+        /**
+         * Maximum size, in characters, of a header.  Larger headers are rejected before being decoded.  A value of zero disables the limit.
+         */
+        private int maximumHeaderSize = ClientCertificateEngine.DEFAULT_MAXIMUM_HEADER_SIZE;
+
+        public int getMaximumCertificateSize() {
+            return this.maximumCertificateSize;
+        }
+
+        public void setMaximumCertificateSize(int maximumCertificateSize) {
+            this.maximumCertificateSize = maximumCertificateSize;
+        }
+
+        public int getMaximumChainLength() {
+            return this.maximumChainLength;
+        }
+
+        public void setMaximumChainLength(int maximumChainLength) {
+            this.maximumChainLength = maximumChainLength;
+        }
+
+        public int getMaximumHeaderSize() {
+            return this.maximumHeaderSize;
+        }
+
+        public void setMaximumHeaderSize(int maximumHeaderSize) {
+            this.maximumHeaderSize = maximumHeaderSize;
+        }
+
+    }
+
+    public static class NegativeCache {
+
+        /**
+         * Maximum number of recently failed headers to remember, by fingerprint, so that they are rejected without being parsed again.  A value of zero
+         * disables the negative cache.
+         */
+        private int maximumSize = ClientCertificateEngine.DEFAULT_NEGATIVE_CACHE_MAXIMUM_SIZE;
+
+        /**
+         * Time for which a failed header is rejected without being parsed again.
+         */
+        private Duration timeToLive = ClientCertificateEngine.DEFAULT_NEGATIVE_CACHE_TIME_TO_LIVE;
+
+        public int getMaximumSize() {
+            return this.maximumSize;
+        }
+
+        public void setMaximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getTimeToLive() {
+            return this.timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+    }
+
+    public static class Validation {
+
+        /**
+         * Interval between checks for changes to the trust store, which is reloaded when its modification time changes.
+         */
+        private Duration checkInterval = ClientCertificateEngine.DEFAULT_TRUST_STORE_CHECK_INTERVAL;
+
+        /**
+         * PEM bundle of trust anchors, such as the Cloud Foundry instance identity CA, against which certificate chains are validated.  Chains that do not
+         * validate are not mapped.  Validation is disabled if not set.
+         */
+        private Path trustStore;
+
+        public Duration getCheckInterval() {
+            return this.checkInterval;
+        }
+
+        public void setCheckInterval(Duration checkInterval) {
+            this.checkInterval = checkInterval;
+        }
+
+        public Path getTrustStore() {
+            return this.trustStore;
+        }
+
+        public void setTrustStore(Path trustStore) {
+            this.trustStore = trustStore;
+        }
+
+    }
+
+    public static class WarmUp {
+
+        /**
+         * Whether to run the decode and parse pipeline over bundled sample headers on a background thread at startup, so that the first real requests are
+         * served at steady-state latency.
+         */
+        private boolean enabled;
+
+        /**
+         * Number of passes over the sample headers when warming up.
+         */
+        private int iterations = ClientCertificateEngine.DEFAULT_WARM_UP_ITERATIONS;
+
+        public int getIterations() {
+            return this.iterations;
+        }
+
+        public void setIterations(int iterations) {
+            this.iterations = iterations;
+        }
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.router.reactive;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ClientCertificateMapperAutoConfigurationTest {
+
+    private final ReactiveWebApplicationContextRunner contextRunner = new ReactiveWebApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(ClientCertificateMapperAutoConfiguration.class))
+        .withPropertyValues("VCAP_APPLICATION={}");
+
+    @Test
+    public void mapper() {
+        this.contextRunner.run(context -> assertThat(context).hasSingleBean(ClientCertificateMapper.class));
+    }
+
+    @Test
+    public void trustedProxies() {
+        this.contextRunner
+            .withPropertyValues("cloudfoundry.client-certificate-mapper.trusted-proxies=10.0.0.0/8")
+            .run(context -> assertThat(context).getFailure().hasRootCauseMessage(
+                "cloudfoundry.client-certificate-mapper.trusted-proxies requires server.forward-headers-strategy=none, so that the remote address is not " +
+                    "rewritten from forwarded headers"));
+    }
+
+    @Test
+    public void trustedProxiesWithoutForwardedHeaders() {
+        this.contextRunner
+            .withPropertyValues("cloudfoundry.client-certificate-mapper.trusted-proxies=10.0.0.0/8", "server.forward-headers-strategy=none")
+            .run(context -> assertThat(context).hasSingleBean(ClientCertificateMapper.class));
+    }
+
+}